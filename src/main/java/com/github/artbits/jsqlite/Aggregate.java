@@ -0,0 +1,14 @@
+package com.github.artbits.jsqlite;
+
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Aggregate {
+    String[] sum() default {};
+    String groupBy() default "";
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class Analyzer {
+
+    private final static Logger logger = Logger.getLogger("com.github.artbits.jsqlite");
+
+    private final Connection connection;
+    private final ReentrantLock lock;
+    private final Metrics metrics;
+    private final long interval;
+    private final long changes;
+    private volatile long analyzedChanges;
+    private volatile long optimizedAt = System.currentTimeMillis();
+    private ScheduledFuture<?> future;
+
+
+    Analyzer(Connection connection, ReentrantLock lock, Config config, Metrics metrics) throws SQLException {
+        this.connection = connection;
+        this.lock = lock;
+        this.metrics = metrics;
+        this.interval = config.optimizeInterval;
+        this.changes = config.analyzeChanges;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("pragma analysis_limit = " + config.analysisLimit + ";");
+        }
+        analyzedChanges = Backup.totalChanges(connection);
+    }
+
+
+    void start(ScheduledExecutorService scheduler) {
+        long tick = (interval > 0) ? Math.max(1, Math.min(interval, 1000)) : 1000;
+        future = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (changes > 0 && Backup.totalChanges(connection) - analyzedChanges >= changes) {
+                    analyze(null);
+                } else if (interval > 0 && System.currentTimeMillis() - optimizedAt >= interval) {
+                    optimize();
+                }
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Updating planner statistics failed", e);
+            }
+        }, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+
+    void analyze(Collection<String> tables) throws SQLException {
+        lock.lock();
+        try (Statement statement = connection.createStatement()) {
+            if (tables == null) {
+                statement.execute("analyze;");
+            } else {
+                for (String table : tables) {
+                    statement.execute("analyze " + table + ";");
+                }
+            }
+            analyzedChanges = Backup.totalChanges(connection);
+            metrics.analyzes.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    void optimize() throws SQLException {
+        lock.lock();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("pragma optimize;");
+            optimizedAt = System.currentTimeMillis();
+            metrics.optimizes.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    void close() throws SQLException {
+        if (future != null) {
+            future.cancel(false);
+        }
+        optimize();
+    }
+
+}
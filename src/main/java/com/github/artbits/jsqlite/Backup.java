@@ -0,0 +1,102 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import org.sqlite.SQLiteConnection;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+final class Backup {
+
+    private final static int BUSY_RETRIES = 100;
+
+
+    static BackupProgress run(Connection source, Path target, BackupOptions options) {
+        try {
+            Path parentPath = target.toAbsolutePath().getParent();
+            if (parentPath != null) {
+                Files.createDirectories(parentPath);
+            }
+            long pageSize = pragma(source, "page_size");
+            long start = System.nanoTime();
+            Consumer<BackupProgress> listener = Optional.ofNullable(options.progressListener).orElse(p -> {});
+            if (options.compact) {
+                long pageCount = pragma(source, "page_count");
+                Files.deleteIfExists(target);
+                try (Statement statement = source.createStatement()) {
+                    statement.executeUpdate(String.format("vacuum into '%s';", target.toString().replace("'", "''")));
+                }
+                BackupProgress progress = new BackupProgress(pageCount, 0, pageSize, elapsed(start));
+                listener.accept(progress);
+                return progress;
+            }
+            long[] last = {0, 0};
+            int rc = ((SQLiteConnection) source).getDatabase().backup("main", target.toString(), (remaining, pageCount) -> {
+                last[0] = pageCount;
+                last[1] = remaining;
+                listener.accept(new BackupProgress(pageCount, remaining, pageSize, elapsed(start)));
+                if (remaining > 0 && options.sleepMillis > 0) {
+                    pause(options.sleepMillis);
+                }
+            }, options.busySleepMillis, BUSY_RETRIES, options.pagesPerStep);
+            if (rc != 0) {
+                throw new SQLException("Backup failed with result code " + rc, null, rc);
+            }
+            return new BackupProgress(last[0], last[1], pageSize, elapsed(start));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    static long pragma(Connection connection, String name) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("pragma " + name + ";")) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+
+    static long totalChanges(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select total_changes();")) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+
+    private static long elapsed(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+}
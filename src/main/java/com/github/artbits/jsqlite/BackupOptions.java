@@ -0,0 +1,63 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import java.util.function.Consumer;
+
+public final class BackupOptions {
+
+    int pagesPerStep = 256;
+    int sleepMillis = 10;
+    int busySleepMillis = 100;
+    boolean compact;
+    Consumer<BackupProgress> progressListener;
+
+
+    BackupOptions() { }
+
+
+    public BackupOptions pagesPerStep(int pages) {
+        pagesPerStep = pages;
+        return this;
+    }
+
+
+    public BackupOptions sleepMillis(int millis) {
+        sleepMillis = millis;
+        return this;
+    }
+
+
+    public BackupOptions busySleepMillis(int millis) {
+        busySleepMillis = millis;
+        return this;
+    }
+
+
+    public BackupOptions compact(boolean compact) {
+        this.compact = compact;
+        return this;
+    }
+
+
+    public BackupOptions progress(Consumer<BackupProgress> consumer) {
+        progressListener = consumer;
+        return this;
+    }
+
+}
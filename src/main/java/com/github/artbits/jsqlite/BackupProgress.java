@@ -0,0 +1,67 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+public final class BackupProgress {
+
+    private final long pageCount;
+    private final long remaining;
+    private final long pageSize;
+    private final long elapsedMillis;
+
+
+    BackupProgress(long pageCount, long remaining, long pageSize, long elapsedMillis) {
+        this.pageCount = pageCount;
+        this.remaining = remaining;
+        this.pageSize = pageSize;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+
+    public long pageCount() {
+        return pageCount;
+    }
+
+
+    public long remaining() {
+        return remaining;
+    }
+
+
+    public long elapsedMillis() {
+        return elapsedMillis;
+    }
+
+
+    public double percent() {
+        return (pageCount > 0) ? 100.0 * (pageCount - remaining) / pageCount : 100.0;
+    }
+
+
+    public double bytesPerSecond() {
+        return (elapsedMillis > 0) ? (pageCount - remaining) * pageSize * 1000.0 / elapsedMillis : 0;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("%.1f%% of %d pages in %d ms (%.1f MB/s)", percent(), pageCount, elapsedMillis,
+                bytesPerSecond() / (1024 * 1024));
+    }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.*;
+
+final class BlobInputStream extends InputStream {
+
+    private final static int CHUNK_SIZE = 1 << 20;
+
+    private final Connection connection;
+    private final String table;
+    private final String column;
+    private final long id;
+    private long offset = 1;
+    private byte[] buffer = new byte[0];
+    private int position;
+    private boolean eof;
+
+
+    BlobInputStream(Connection connection, String table, String column, long id) {
+        this.connection = connection;
+        this.table = table;
+        this.column = column;
+        this.id = id;
+    }
+
+
+    static InputStream open(Class<?> tClass, String column, ResultSet resultSet) throws SQLException {
+        long id;
+        try {
+            id = resultSet.getLong(resultSet.findColumn("id"));
+        } catch (SQLException e) {
+            byte[] bytes = resultSet.getBytes(column);
+            return (bytes != null) ? new ByteArrayInputStream(bytes) : null;
+        }
+        Connection connection = resultSet.getStatement().getConnection();
+        return new BlobInputStream(connection, tClass.getSimpleName().toLowerCase(), column, id);
+    }
+
+
+    @Override
+    public int read() throws IOException {
+        if (position == buffer.length && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == buffer.length && !fill()) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.length - position);
+        System.arraycopy(buffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+
+    @Override
+    public int available() {
+        return buffer.length - position;
+    }
+
+
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        String sql = String.format("select substr(%s, ?, ?) from %s where id = ?;", column, table);
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, offset);
+            statement.setInt(2, CHUNK_SIZE);
+            statement.setLong(3, id);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                byte[] bytes = resultSet.next() ? resultSet.getBytes(1) : null;
+                buffer = (bytes != null) ? bytes : new byte[0];
+                position = 0;
+                offset += buffer.length;
+                eof = buffer.length < CHUNK_SIZE;
+                return buffer.length > 0;
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,413 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+final class Bulk {
+
+    private final static int BUFFER_SIZE = 1 << 16;
+
+
+    static long export(Connection connection, Class<?> tClass, OutputStream outputStream, Format format, boolean header) {
+        String sql = SQLTemplate.query(tClass, null);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            String[] columns = new String[metaData.getColumnCount()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = metaData.getColumnName(i + 1);
+            }
+            List<String> compressedColumns = new Reflect<>(tClass).getCompressedColumns();
+            boolean[] compressed = new boolean[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                compressed[i] = compressedColumns.contains(columns[i]);
+            }
+            JsonWriter jsonWriter = new JsonWriter(writer);
+            jsonWriter.setLenient(true);
+            if (format == Format.CSV && header) {
+                writeCsvRecord(writer, columns);
+            }
+            long rows = 0;
+            Object[] values = new Object[columns.length];
+            while (resultSet.next()) {
+                for (int i = 0; i < columns.length; i++) {
+                    Object value = compressed[i] ? Compression.decode(resultSet.getObject(i + 1)) : resultSet.getObject(i + 1);
+                    values[i] = (value instanceof byte[]) ? Base64.getEncoder().encodeToString((byte[]) value) : value;
+                }
+                if (format == Format.CSV) {
+                    writeCsvRecord(writer, values);
+                } else {
+                    writeJsonRecord(jsonWriter, columns, values);
+                    writer.write('\n');
+                }
+                rows++;
+            }
+            writer.flush();
+            return rows;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    static long load(Connection[] connections, ReentrantLock[] locks, Router router, Class<?> tClass,
+                     InputStream inputStream, Format format, BulkOptions options) {
+        Map<String, String> typeMap = new LinkedHashMap<>();
+        Reflect<?> reflect = new Reflect<>(tClass);
+        List<String> compressedColumns = reflect.getCompressedColumns();
+        reflect.getDBColumnsWithType((column, type) -> {
+            boolean bool = reflect.getType(column) == Boolean.class || reflect.getType(column) == boolean.class;
+            typeMap.put(column, bool ? "boolean" : compressedColumns.contains(column) ? "compressed" : type);
+        });
+        String[] columns = typeMap.keySet().toArray(new String[0]);
+        String[] types = typeMap.values().toArray(new String[0]);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        List<List<String>> deferredIndexes = new ArrayList<>();
+        PreparedStatement[] statements = new PreparedStatement[connections.length];
+        try {
+            for (int i = 0; i < connections.length; i++) {
+                if (options.deferIndexes) {
+                    deferredIndexes.add(dropIndexes(connections[i], locks[i], tClass));
+                }
+                statements[i] = connections[i].prepareStatement(SQLTemplate.insertPrepared(tClass, columns));
+            }
+            RecordReader recordReader = (format == Format.CSV) ? csvReader(reader, columns) : jsonReader(reader, columns);
+            List<List<Object[]>> chunks = new ArrayList<>();
+            for (int i = 0; i < connections.length; i++) {
+                chunks.add(new ArrayList<>(Math.min(options.chunkSize, BUFFER_SIZE)));
+            }
+            long rows = 0;
+            Object[] record;
+            while ((record = recordReader.next()) != null) {
+                Object[] values = toDBValues(columns, types, record);
+                int target = router.route(columns, values);
+                List<Object[]> chunk = chunks.get(target);
+                chunk.add(values);
+                if (chunk.size() >= options.chunkSize) {
+                    rows += writeChunk(connections[target], locks[target], statements[target], chunk);
+                }
+            }
+            for (int i = 0; i < connections.length; i++) {
+                rows += writeChunk(connections[i], locks[i], statements[i], chunks.get(i));
+            }
+            return rows;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            for (PreparedStatement statement : statements) {
+                try {
+                    if (statement != null) {
+                        statement.close();
+                    }
+                } catch (SQLException ignored) {
+                }
+            }
+            for (int i = 0; i < deferredIndexes.size(); i++) {
+                restoreIndexes(connections[i], locks[i], tClass, deferredIndexes.get(i));
+            }
+        }
+    }
+
+
+    private static int writeChunk(Connection connection, ReentrantLock lock, PreparedStatement statement,
+                                  List<Object[]> chunk) throws SQLException {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                for (Object[] values : chunk) {
+                    for (int i = 0; i < values.length; i++) {
+                        statement.setObject(i + 1, values[i]);
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                statement.clearBatch();
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            int size = chunk.size();
+            chunk.clear();
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private static List<String> dropIndexes(Connection connection, ReentrantLock lock, Class<?> tClass) {
+        List<String> dropped = new ArrayList<>();
+        String table = tClass.getSimpleName().toLowerCase();
+        String sql = SQLTemplate.query("sqlite_master", new Options().select("name").where("tbl_name = ?", table));
+        lock.lock();
+        try (Statement statement = connection.createStatement()) {
+            Set<String> existing = new HashSet<>();
+            try (ResultSet resultSet = statement.executeQuery(sql)) {
+                while (resultSet.next()) {
+                    existing.add(resultSet.getString(1));
+                }
+            }
+            Reflect<?> reflect = new Reflect<>(tClass);
+            List<String> indexes = new ArrayList<>();
+            reflect.getIndexList((index, column) -> indexes.add(index));
+            for (String index : indexes) {
+                if (existing.contains(index)) {
+                    statement.executeUpdate(SQLTemplate.dropIndex(index));
+                    dropped.add(index);
+                }
+            }
+            if (existing.contains(table + "_fts_ai")) {
+                for (String s : SQLTemplate.dropFullTextTriggers(tClass)) {
+                    statement.executeUpdate(s);
+                }
+                dropped.add(table + "_fts");
+            }
+            return dropped;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private static void restoreIndexes(Connection connection, ReentrantLock lock, Class<?> tClass, List<String> dropped) {
+        String table = tClass.getSimpleName().toLowerCase();
+        lock.lock();
+        try (Statement statement = connection.createStatement()) {
+            Reflect<?> reflect = new Reflect<>(tClass);
+            List<String> columns = new ArrayList<>();
+            reflect.getIndexList((index, column) -> {
+                if (dropped.contains(index)) {
+                    columns.add(column);
+                }
+            });
+            for (String column : columns) {
+                statement.executeUpdate(SQLTemplate.createIndex(tClass, column));
+            }
+            if (dropped.contains(table + "_fts")) {
+                for (String s : SQLTemplate.createFullTextTriggers(tClass, reflect.getFullTextColumns())) {
+                    statement.executeUpdate(s);
+                }
+                statement.executeUpdate(SQLTemplate.rebuildFullText(tClass));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private static Object[] toDBValues(String[] columns, String[] types, Object[] record) {
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            values[i] = toDBValue(types[i], record[i]);
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < columns.length; i++) {
+            if (values[i] == null && (Objects.equals(columns[i], "createdAt") || Objects.equals(columns[i], "updatedAt"))) {
+                values[i] = now;
+            }
+        }
+        return values;
+    }
+
+
+    private static Object toDBValue(String type, Object value) {
+        if (value == null || (value instanceof JsonElement && ((JsonElement) value).isJsonNull())) {
+            return null;
+        }
+        if (value instanceof JsonElement) {
+            JsonElement element = (JsonElement) value;
+            if (!element.isJsonPrimitive()) {
+                return Objects.equals(type, "compressed") ? Compression.encode(element.toString()) : element.toString();
+            }
+            if (element.getAsJsonPrimitive().isBoolean()) {
+                return element.getAsBoolean() ? 1 : 0;
+            }
+            switch (type) {
+                case "integer": return element.getAsLong();
+                case "real": return element.getAsDouble();
+                case "boolean": return element.getAsJsonPrimitive().isNumber() ? element.getAsInt() : toDBValue(type, element.getAsString());
+                default: return toDBValue(type, element.getAsString());
+            }
+        }
+        String s = (String) value;
+        switch (type) {
+            case "integer": return Long.parseLong(s);
+            case "real": return Double.parseDouble(s);
+            case "boolean": return (Objects.equals(s, "1") || Objects.equals(s, "true")) ? 1 : 0;
+            case "blob": return Base64.getDecoder().decode(s);
+            case "compressed": return Compression.encode(s);
+            default: return s;
+        }
+    }
+
+
+    private static void writeJsonRecord(JsonWriter jsonWriter, String[] columns, Object[] values) throws IOException {
+        jsonWriter.beginObject();
+        for (int i = 0; i < columns.length; i++) {
+            jsonWriter.name(columns[i]);
+            Object value = values[i];
+            if (value == null) {
+                jsonWriter.nullValue();
+            } else if (value instanceof Number) {
+                jsonWriter.value((Number) value);
+            } else {
+                jsonWriter.value(String.valueOf(value));
+            }
+        }
+        jsonWriter.endObject();
+    }
+
+
+    private static void writeCsvRecord(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+            String s = String.valueOf(value);
+            if (value instanceof Number || !(s.isEmpty() || s.indexOf(',') >= 0 || s.indexOf('"') >= 0
+                    || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0)) {
+                writer.write(s);
+            } else {
+                writer.write('"');
+                writer.write(s.replace("\"", "\"\""));
+                writer.write('"');
+            }
+        }
+        writer.write('\n');
+    }
+
+
+    private static RecordReader jsonReader(BufferedReader reader, String[] columns) {
+        return () -> {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                JsonObject object = JsonParser.parseString(line).getAsJsonObject();
+                Object[] record = new Object[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    record[i] = object.get(columns[i]);
+                }
+                return record;
+            }
+            return null;
+        };
+    }
+
+
+    private static RecordReader csvReader(BufferedReader reader, String[] columns) throws IOException {
+        List<String> header = readCsvRecord(reader);
+        int[] positions = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            positions[i] = (header != null) ? header.indexOf(columns[i]) : -1;
+        }
+        return () -> {
+            List<String> fields;
+            while ((fields = readCsvRecord(reader)) != null) {
+                if (fields.size() == 1 && fields.get(0) == null) {
+                    continue;
+                }
+                Object[] record = new Object[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    record[i] = (positions[i] >= 0 && positions[i] < fields.size()) ? fields.get(positions[i]) : null;
+                }
+                return record;
+            }
+            return null;
+        };
+    }
+
+
+    private static List<String> readCsvRecord(BufferedReader reader) throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder builder = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted CSV field");
+                } else if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        builder.append('"');
+                    } else {
+                        quoted = false;
+                        reader.reset();
+                    }
+                } else {
+                    builder.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',' || c == '\n' || c == -1) {
+                fields.add((wasQuoted || builder.length() > 0) ? builder.toString() : null);
+                if (c != ',') {
+                    return fields;
+                }
+                builder.setLength(0);
+                wasQuoted = false;
+            } else if (c != '\r') {
+                builder.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+
+
+    private interface RecordReader {
+        Object[] next() throws IOException;
+    }
+
+
+    interface Router {
+        int route(String[] columns, Object[] values);
+    }
+
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+public final class BulkOptions {
+
+    int chunkSize = 10_000;
+    boolean deferIndexes;
+
+
+    BulkOptions() { }
+
+
+    public BulkOptions chunkSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        chunkSize = size;
+        return this;
+    }
+
+
+    public BulkOptions deferIndexes(boolean defer) {
+        deferIndexes = defer;
+        return this;
+    }
+
+}
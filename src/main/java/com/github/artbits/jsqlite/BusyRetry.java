@@ -0,0 +1,79 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+final class BusyRetry {
+
+    private final static int SQLITE_BUSY = 5;
+    private final static int SQLITE_LOCKED = 6;
+
+    private final Config config;
+    private final Metrics metrics;
+
+
+    BusyRetry(Config config, Metrics metrics) {
+        this.config = config;
+        this.metrics = metrics;
+    }
+
+
+    <R> R run(Callable<R> body) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return body.call();
+            } catch (Exception e) {
+                if (!isBusy(e)) {
+                    throw (e instanceof RuntimeException) ? (RuntimeException) e : new RuntimeException(e);
+                }
+                metrics.busyErrors.incrementAndGet();
+                if (attempt >= config.busyRetries) {
+                    metrics.busyFailures.incrementAndGet();
+                    throw (e instanceof RuntimeException) ? (RuntimeException) e : new RuntimeException(e);
+                }
+                long ceiling = Math.min(config.busyBackoffMax, config.busyBackoff << Math.min(attempt, 20));
+                long millis = ThreadLocalRandom.current().nextLong(ceiling + 1);
+                metrics.busyRetries.incrementAndGet();
+                metrics.busyWaitMillis.addAndGet(millis);
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+
+
+    static boolean isBusy(Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                int code = ((SQLException) t).getErrorCode() & 0xff;
+                if (code == SQLITE_BUSY || code == SQLITE_LOCKED) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+public final class Change {
+
+    public enum Type {
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+
+
+    private final Type type;
+    private final String table;
+    private final long id;
+
+
+    Change(Type type, String table, long id) {
+        this.type = type;
+        this.table = table;
+        this.id = id;
+    }
+
+
+    public Type type() {
+        return type;
+    }
+
+
+    public String table() {
+        return table;
+    }
+
+
+    public long id() {
+        return id;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("%s %s %d", type, table, id);
+    }
+
+}
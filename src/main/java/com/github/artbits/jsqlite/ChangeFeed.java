@@ -0,0 +1,166 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import org.sqlite.SQLiteCommitListener;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteUpdateListener;
+
+import java.sql.Connection;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class ChangeFeed implements SQLiteUpdateListener, SQLiteCommitListener {
+
+    private final static Logger logger = Logger.getLogger("com.github.artbits.jsqlite");
+
+    private final Map<String, List<Consumer<List<Change>>>> listenersMap = new ConcurrentHashMap<>();
+    private final List<Change> pending = new ArrayList<>();
+    private final Deque<Map<String, List<Change>>> queue = new ArrayDeque<>();
+    private final SQLiteConnection connection;
+    private final int capacity;
+    private final Thread thread;
+    private volatile boolean closed;
+
+
+    ChangeFeed(Connection connection, Config config) {
+        this.connection = (SQLiteConnection) connection;
+        this.capacity = config.changeBufferSize;
+        this.thread = new Thread(this::deliver, "jsqlite-changes");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        this.connection.addUpdateListener(this);
+        this.connection.addCommitListener(this);
+    }
+
+
+    void subscribe(String table, Consumer<List<Change>> listener) {
+        listenersMap.computeIfAbsent(table, t -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+
+    void unsubscribe(String table, Consumer<List<Change>> listener) {
+        Optional.ofNullable(listenersMap.get(table)).ifPresent(list -> list.remove(listener));
+    }
+
+
+    boolean isSubscribed(String table) {
+        List<Consumer<List<Change>>> listeners = listenersMap.get(table);
+        return listeners != null && !listeners.isEmpty();
+    }
+
+
+    void awaitCapacity() {
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        synchronized (queue) {
+            while (queue.size() > capacity && !closed) {
+                try {
+                    queue.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+
+    void close() {
+        connection.removeUpdateListener(this);
+        connection.removeCommitListener(this);
+        synchronized (queue) {
+            closed = true;
+            queue.notifyAll();
+        }
+    }
+
+
+    @Override
+    public void onUpdate(Type type, String database, String table, long rowId) {
+        if (isSubscribed(table)) {
+            synchronized (pending) {
+                pending.add(new Change(Change.Type.valueOf(type.name()), table, rowId));
+            }
+        }
+    }
+
+
+    @Override
+    public void onCommit() {
+        Map<String, List<Change>> batch = new HashMap<>();
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            for (Change change : pending) {
+                batch.computeIfAbsent(change.table(), t -> new ArrayList<>()).add(change);
+            }
+            pending.clear();
+        }
+        synchronized (queue) {
+            queue.addLast(batch);
+            queue.notifyAll();
+        }
+    }
+
+
+    @Override
+    public void onRollback() {
+        synchronized (pending) {
+            pending.clear();
+        }
+    }
+
+
+    private void deliver() {
+        while (true) {
+            Map<String, List<Change>> batch;
+            synchronized (queue) {
+                while (queue.isEmpty() && !closed) {
+                    try {
+                        queue.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (queue.isEmpty()) {
+                    return;
+                }
+                batch = queue.pollFirst();
+                queue.notifyAll();
+            }
+            batch.forEach((table, changes) -> {
+                List<Change> list = Collections.unmodifiableList(changes);
+                for (Consumer<List<Change>> listener : listenersMap.getOrDefault(table, Collections.emptyList())) {
+                    try {
+                        listener.accept(list);
+                    } catch (RuntimeException e) {
+                        logger.log(Level.WARNING, "Change listener failed", e);
+                    }
+                }
+            });
+        }
+    }
+
+}
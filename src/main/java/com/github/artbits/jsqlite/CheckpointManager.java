@@ -0,0 +1,116 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class CheckpointManager {
+
+    private final static Logger logger = Logger.getLogger("com.github.artbits.jsqlite");
+
+    private final Connection connection;
+    private final Path walPath;
+    private final Metrics metrics;
+    private final LongSupplier lastWrite;
+    private final long interval;
+    private final long size;
+    private final long idle;
+    private long checkpointedAt = System.currentTimeMillis();
+    private boolean behind;
+    private ScheduledFuture<?> future;
+
+
+    CheckpointManager(String url, String path, Config config, Metrics metrics, LongSupplier lastWrite) throws SQLException {
+        this.connection = DriverManager.getConnection(url);
+        if (config.busyTimeout >= 0) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("pragma busy_timeout = " + config.busyTimeout + ";");
+            }
+        }
+        this.walPath = Paths.get(path + "-wal");
+        this.metrics = metrics;
+        this.lastWrite = lastWrite;
+        this.interval = config.checkpointInterval;
+        this.size = config.checkpointSize;
+        this.idle = config.checkpointIdle;
+    }
+
+
+    void start(ScheduledExecutorService scheduler) {
+        long tick = Math.max(1, Math.min(interval, 1000));
+        future = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                long walSize = Files.exists(walPath) ? Files.size(walPath) : 0;
+                metrics.walSize.set(walSize);
+                long now = System.currentTimeMillis();
+                if (walSize == 0) {
+                    return;
+                }
+                if (now - lastWrite.getAsLong() >= idle) {
+                    checkpoint("truncate");
+                } else if (walSize >= size) {
+                    long left = checkpoint(behind ? "restart" : "passive");
+                    behind = left > 0;
+                    if (left == 0) {
+                        checkpoint("truncate");
+                    }
+                } else if (now - checkpointedAt >= interval) {
+                    checkpoint("passive");
+                }
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "WAL checkpoint failed", e);
+            }
+        }, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+
+    long checkpoint(String mode) throws Exception {
+        long start = System.nanoTime();
+        boolean busy = false;
+        long left = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("pragma wal_checkpoint(" + mode + ");")) {
+            if (resultSet.next()) {
+                busy = resultSet.getInt(1) != 0;
+                left = Math.max(0, resultSet.getLong(2) - resultSet.getLong(3));
+            }
+        }
+        metrics.recordCheckpoint(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), busy);
+        metrics.walSize.set(Files.exists(walPath) ? Files.size(walPath) : 0);
+        checkpointedAt = System.currentTimeMillis();
+        return left;
+    }
+
+
+    void close() throws SQLException {
+        if (future != null) {
+            future.cancel(false);
+        }
+        connection.close();
+    }
+
+}
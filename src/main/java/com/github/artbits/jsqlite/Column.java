@@ -12,4 +12,9 @@ public @interface Column {
     boolean index() default false;
     boolean ignore() default false;
     boolean json() default false;
+    boolean fullText() default false;
+    boolean shardKey() default false;
+    String relation() default "";
+    boolean compress() default false;
+    String[] jsonIndex() default {};
 }
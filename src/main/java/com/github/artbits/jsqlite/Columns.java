@@ -0,0 +1,283 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.artbits.jsqlite;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+public final class Columns {
+
+    private final static int LONG = 0;
+    private final static int DOUBLE = 1;
+    private final static int STRING = 2;
+
+    private final List<String> names;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final int[] kinds;
+    private final Buffer[] buffers;
+    private final BitSet[] nulls;
+    private final List<List<String>> dictionaries = new ArrayList<>();
+    private final List<Map<String, Integer>> codes = new ArrayList<>();
+    private final ByteBuffer storage;
+    private final int capacity;
+    private int size;
+
+
+    private Columns(Reflect<?> reflect, ByteBuffer storage, int capacity, String... columns) {
+        this.names = Collections.unmodifiableList(Arrays.asList(columns.clone()));
+        this.kinds = new int[columns.length];
+        this.buffers = new Buffer[columns.length];
+        this.nulls = new BitSet[columns.length];
+        this.storage = storage;
+        this.capacity = capacity;
+        int offset = 0;
+        for (int i = 0; i < columns.length; i++) {
+            kinds[i] = kind(reflect, columns[i]);
+            int width = (kinds[i] == STRING) ? Integer.BYTES : Long.BYTES;
+            storage.limit(offset + capacity * width).position(offset);
+            ByteBuffer slice = storage.slice().order(ByteOrder.nativeOrder());
+            buffers[i] = (kinds[i] == LONG) ? slice.asLongBuffer() : (kinds[i] == DOUBLE) ? slice.asDoubleBuffer() : slice.asIntBuffer();
+            nulls[i] = new BitSet();
+            dictionaries.add((kinds[i] == STRING) ? new ArrayList<>() : null);
+            codes.add((kinds[i] == STRING) ? new HashMap<>() : null);
+            indexes.put(columns[i], i);
+            offset += capacity * width;
+        }
+        storage.clear();
+    }
+
+
+    static Columns allocate(Reflect<?> reflect, int capacity, String... columns) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        return new Columns(reflect, ByteBuffer.allocateDirect(bytes(reflect, capacity, columns)), capacity, columns);
+    }
+
+
+    static Columns map(Reflect<?> reflect, Path file, long rows, String... columns) throws IOException {
+        if (rows > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many rows to map: " + rows);
+        }
+        int capacity = (int) rows;
+        int bytes = bytes(reflect, capacity, columns);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return new Columns(reflect, channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes), capacity, columns);
+        }
+    }
+
+
+    private static int bytes(Reflect<?> reflect, int capacity, String... columns) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("No columns given");
+        }
+        long bytes = 0;
+        for (String column : columns) {
+            bytes += (long) capacity * ((kind(reflect, column) == STRING) ? Integer.BYTES : Long.BYTES);
+        }
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Columns do not fit in one buffer: " + bytes + " bytes");
+        }
+        return (int) bytes;
+    }
+
+
+    private static int kind(Reflect<?> reflect, String column) {
+        Field field = reflect.getField(column);
+        if (field == null || Reflect.isJson(field) || Reflect.isCompress(field)) {
+            throw new IllegalArgumentException("Column cannot be read as a primitive buffer: " + column);
+        }
+        switch (field.getType().getSimpleName().toLowerCase()) {
+            case "int":
+            case "integer":
+            case "byte":
+            case "short":
+            case "long":
+            case "boolean": return LONG;
+            case "float":
+            case "double": return DOUBLE;
+            case "char":
+            case "character":
+            case "string": return STRING;
+            default: throw new IllegalArgumentException("Column cannot be read as a primitive buffer: " + column);
+        }
+    }
+
+
+    public List<String> names() {
+        return names;
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    public int capacity() {
+        return capacity;
+    }
+
+
+    public LongBuffer longs(String column) {
+        LongBuffer buffer = ((LongBuffer) buffer(column, LONG)).duplicate();
+        buffer.limit(size);
+        return buffer;
+    }
+
+
+    public DoubleBuffer doubles(String column) {
+        DoubleBuffer buffer = ((DoubleBuffer) buffer(column, DOUBLE)).duplicate();
+        buffer.limit(size);
+        return buffer;
+    }
+
+
+    public IntBuffer codes(String column) {
+        IntBuffer buffer = ((IntBuffer) buffer(column, STRING)).duplicate();
+        buffer.limit(size);
+        return buffer;
+    }
+
+
+    public List<String> dictionary(String column) {
+        buffer(column, STRING);
+        return Collections.unmodifiableList(dictionaries.get(indexes.get(column)));
+    }
+
+
+    public String string(String column, int row) {
+        int code = ((IntBuffer) buffer(column, STRING)).get(row);
+        return (code >= 0) ? dictionaries.get(indexes.get(column)).get(code) : null;
+    }
+
+
+    public boolean isNull(String column, int row) {
+        Integer index = indexes.get(column);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown column: " + column);
+        }
+        return nulls[index].get(row);
+    }
+
+
+    private Buffer buffer(String column, int kind) {
+        Integer index = indexes.get(column);
+        if (index == null || kinds[index] != kind) {
+            throw new IllegalArgumentException("Unknown column or wrong type: " + column);
+        }
+        return buffers[index];
+    }
+
+
+    boolean full() {
+        return size == capacity;
+    }
+
+
+    void clear() {
+        size = 0;
+        for (BitSet bitSet : nulls) {
+            bitSet.clear();
+        }
+    }
+
+
+    void append(ResultSet resultSet) throws SQLException {
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case LONG: {
+                    long value = resultSet.getLong(i + 1);
+                    nulls[i].set(size, resultSet.wasNull());
+                    ((LongBuffer) buffers[i]).put(size, value);
+                    break;
+                }
+                case DOUBLE: {
+                    double value = resultSet.getDouble(i + 1);
+                    boolean isNull = resultSet.wasNull();
+                    nulls[i].set(size, isNull);
+                    ((DoubleBuffer) buffers[i]).put(size, isNull ? Double.NaN : value);
+                    break;
+                }
+                default: {
+                    String value = resultSet.getString(i + 1);
+                    nulls[i].set(size, value == null);
+                    ((IntBuffer) buffers[i]).put(size, (value != null) ? encode(i, value) : -1);
+                }
+            }
+        }
+        size++;
+    }
+
+
+    void append(Reflect<?> reflect) {
+        for (int i = 0; i < kinds.length; i++) {
+            Object value = reflect.getValue(names.get(i));
+            nulls[i].set(size, value == null);
+            switch (kinds[i]) {
+                case LONG: {
+                    long number = (value instanceof Boolean) ? ((Boolean) value ? 1 : 0) : (value != null) ? ((Number) value).longValue() : 0;
+                    ((LongBuffer) buffers[i]).put(size, number);
+                    break;
+                }
+                case DOUBLE: {
+                    ((DoubleBuffer) buffers[i]).put(size, (value != null) ? ((Number) value).doubleValue() : Double.NaN);
+                    break;
+                }
+                default: {
+                    ((IntBuffer) buffers[i]).put(size, (value != null) ? encode(i, String.valueOf(value)) : -1);
+                }
+            }
+        }
+        size++;
+    }
+
+
+    private int encode(int index, String value) {
+        Map<String, Integer> map = codes.get(index);
+        Integer code = map.get(value);
+        if (code == null) {
+            List<String> dictionary = dictionaries.get(index);
+            code = dictionary.size();
+            dictionary.add(value);
+            map.put(value, code);
+        }
+        return code;
+    }
+
+
+    void force() {
+        if (storage instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) storage).force();
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("%d of %d rows of %s", size, capacity, names);
+    }
+
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.artbits.jsqlite;
+
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+public final class Config {
+
+    long slowQueryThreshold = -1;
+    long slowQueryInterval = 60_000;
+    Consumer<SlowQuery> slowQueryListener;
+    int changeBufferSize = 1024;
+    Executor queryExecutor;
+    boolean inMemory;
+    long persistInterval = 1000;
+    long persistChanges = Long.MAX_VALUE;
+    String journalMode;
+    long checkpointInterval;
+    long checkpointSize = 4 << 20;
+    long checkpointIdle = 5_000;
+    long purgeInterval = 60_000;
+    long purgeRate = 10_000;
+    int purgeChunkSize = 1000;
+    long queryTimeout;
+    long optimizeInterval;
+    long analyzeChanges;
+    int analysisLimit = 400;
+    String autoVacuum;
+    long vacuumInterval;
+    long vacuumIdle = 5_000;
+    long vacuumBudget = 50;
+    int vacuumStep = 256;
+    long busyTimeout = -1;
+    int busyRetries;
+    long busyBackoff = 10;
+    long busyBackoffMax = 1000;
+
+
+    Config() { }
+
+
+    public Config slowQueryThreshold(long millis) {
+        slowQueryThreshold = millis;
+        return this;
+    }
+
+
+    public Config slowQueryInterval(long millis) {
+        slowQueryInterval = millis;
+        return this;
+    }
+
+
+    public Config slowQueryListener(Consumer<SlowQuery> consumer) {
+        slowQueryListener = consumer;
+        return this;
+    }
+
+
+    public Config changeBufferSize(int size) {
+        changeBufferSize = size;
+        return this;
+    }
+
+
+    public Config queryExecutor(Executor executor) {
+        queryExecutor = executor;
+        return this;
+    }
+
+
+    public Config inMemory(boolean inMemory) {
+        this.inMemory = inMemory;
+        return this;
+    }
+
+
+    public Config persistInterval(long millis) {
+        persistInterval = millis;
+        return this;
+    }
+
+
+    public Config persistChanges(long changes) {
+        persistChanges = changes;
+        return this;
+    }
+
+
+    public Config journalMode(String mode) {
+        journalMode = mode;
+        return this;
+    }
+
+
+    public Config checkpointInterval(long millis) {
+        checkpointInterval = millis;
+        return this;
+    }
+
+
+    public Config checkpointSize(long bytes) {
+        checkpointSize = bytes;
+        return this;
+    }
+
+
+    public Config checkpointIdle(long millis) {
+        checkpointIdle = millis;
+        return this;
+    }
+
+
+    public Config purgeInterval(long millis) {
+        purgeInterval = millis;
+        return this;
+    }
+
+
+    public Config purgeRate(long rowsPerSecond) {
+        purgeRate = rowsPerSecond;
+        return this;
+    }
+
+
+    public Config purgeChunkSize(int rows) {
+        purgeChunkSize = rows;
+        return this;
+    }
+
+
+    public Config queryTimeout(long millis) {
+        queryTimeout = millis;
+        return this;
+    }
+
+
+    public Config optimizeInterval(long millis) {
+        optimizeInterval = millis;
+        return this;
+    }
+
+
+    public Config analyzeChanges(long rows) {
+        analyzeChanges = rows;
+        return this;
+    }
+
+
+    public Config analysisLimit(int rows) {
+        analysisLimit = rows;
+        return this;
+    }
+
+
+    public Config autoVacuum(String mode) {
+        autoVacuum = mode;
+        return this;
+    }
+
+
+    public Config vacuumInterval(long millis) {
+        vacuumInterval = millis;
+        return this;
+    }
+
+
+    public Config vacuumIdle(long millis) {
+        vacuumIdle = millis;
+        return this;
+    }
+
+
+    public Config vacuumBudget(long millis) {
+        vacuumBudget = millis;
+        return this;
+    }
+
+
+    public Config vacuumStep(int pages) {
+        vacuumStep = pages;
+        return this;
+    }
+
+
+    public Config busyTimeout(long millis) {
+        busyTimeout = millis;
+        return this;
+    }
+
+
+    public Config busyRetries(int retries) {
+        busyRetries = retries;
+        return this;
+    }
+
+
+    public Config busyBackoff(long baseMillis, long maxMillis) {
+        busyBackoff = baseMillis;
+        busyBackoffMax = maxMillis;
+        return this;
+    }
+
+}
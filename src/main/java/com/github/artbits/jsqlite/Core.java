@@ -18,11 +18,22 @@ package com.github.artbits.jsqlite;
 
 import com.google.gson.Gson;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
@@ -34,8 +45,42 @@ final class Core implements DB {
 
     private final Connection connection;
 
+    private final String url;
 
-    Core(String path) {
+    private final Config config;
+
+    private final SlowQueryLog slowQueryLog;
+
+    private volatile ChangeFeed changeFeed;
+
+    private volatile ExecutorService queryExecutor;
+
+    private volatile ScheduledExecutorService scheduler;
+
+    private final MemoryPersister memoryPersister;
+
+    private final CheckpointManager checkpointManager;
+
+    private final Metrics metrics = new Metrics();
+
+    private final ExpiryPurger expiryPurger;
+
+    private final Analyzer analyzer;
+
+    private final BusyRetry busyRetry;
+
+    private int transactionDepth;
+
+    private final Map<Class<?>, Aggregate> summaries = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, Partitioning> partitionings = new ConcurrentHashMap<>();
+
+    private volatile long lastWrite = System.currentTimeMillis();
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+
+    Core(String path, Config config) {
         try {
             Path databasePath = Paths.get(path);
             Path parentPath = databasePath.getParent();
@@ -43,7 +88,49 @@ final class Core implements DB {
                 Files.createDirectories(parentPath);
             }
             Class.forName("org.sqlite.JDBC");
-            connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+            url = "jdbc:sqlite:" + path;
+            connection = DriverManager.getConnection(config.inMemory ? "jdbc:sqlite::memory:" : url);
+            this.config = config;
+            expiryPurger = new ExpiryPurger(this, config);
+            busyRetry = new BusyRetry(config, metrics);
+            if (config.busyTimeout >= 0) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute($("pragma busy_timeout = %d;", config.busyTimeout));
+                }
+            }
+            Deadline.install(connection);
+            if (config.autoVacuum != null && Backup.pragma(connection, "page_count") == 0) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute($("pragma auto_vacuum = %s;", config.autoVacuum));
+                }
+            }
+            slowQueryLog = new SlowQueryLog(connection, config);
+            memoryPersister = config.inMemory ? new MemoryPersister(connection, lock, path, config) : null;
+            if (memoryPersister != null) {
+                memoryPersister.load();
+                memoryPersister.start(scheduler());
+            }
+            analyzer = new Analyzer(connection, lock, config, metrics);
+            if (config.optimizeInterval > 0 || config.analyzeChanges > 0) {
+                analyzer.start(scheduler());
+            }
+            if (config.journalMode != null && !config.inMemory) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute($("pragma journal_mode = %s;", config.journalMode));
+                }
+            }
+            if ("wal".equalsIgnoreCase(config.journalMode) && config.checkpointInterval > 0 && !config.inMemory) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("pragma wal_autocheckpoint = 0;");
+                }
+                checkpointManager = new CheckpointManager(url, path, config, metrics, () -> lastWrite);
+                checkpointManager.start(scheduler());
+            } else {
+                checkpointManager = null;
+            }
+            if (config.vacuumInterval > 0) {
+                maintenance().schedule(scheduler(), config, () -> lastWrite);
+            }
             Runtime.getRuntime().addShutdownHook(new Thread(this::close));
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -53,7 +140,21 @@ final class Core implements DB {
 
     @Override
     public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
         try {
+            expiryPurger.close();
+            Optional.ofNullable(scheduler).ifPresent(ExecutorService::shutdown);
+            analyzer.close();
+            if (memoryPersister != null) {
+                memoryPersister.close();
+            }
+            if (checkpointManager != null) {
+                checkpointManager.close();
+            }
+            Optional.ofNullable(changeFeed).ifPresent(ChangeFeed::close);
+            Optional.ofNullable(queryExecutor).ifPresent(ExecutorService::shutdown);
             connection.close();
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -64,7 +165,8 @@ final class Core implements DB {
     @Override
     public void tables(Class<?>... classes) {
         HashMap<String, HashMap<String, String>> tablesMap = new HashMap<>();
-        HashMap<String, String> indexMap = new HashMap<>();
+        Set<String> indexSet = new HashSet<>();
+        Set<String> analyzeSet = new HashSet<>();
         String s = SQLTemplate.query("sqlite_master", new Options().where("type = ?", "table"));
         try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(s)) {
             DatabaseMetaData metaData = connection.getMetaData();
@@ -82,8 +184,9 @@ final class Core implements DB {
                 try (ResultSet set = metaData.getIndexInfo(null, null, tableName, false, false)){
                     while (set.next()) {
                         String index = set.getString("INDEX_NAME");
-                        String column = set.getString("COLUMN_NAME");
-                        Optional.ofNullable(index).ifPresent(i -> indexMap.put(index, column));
+                        if (index != null && !index.startsWith("sqlite_")) {
+                            indexSet.add(index);
+                        }
                     }
                 }
             }
@@ -93,6 +196,7 @@ final class Core implements DB {
                 Reflect<?> reflect = new Reflect<>(tClass);
                 if (tableColumnTypeMap == null) {
                     statement.executeUpdate(SQLTemplate.create(tClass));
+                    analyzeSet.add(tableName);
                 } else {
                     reflect.getDBColumnsWithType((column, type) -> {
                         if (tableColumnTypeMap.getOrDefault(column, null) == null) {
@@ -106,23 +210,111 @@ final class Core implements DB {
                 }
                 reflect.getIndexList((index, column) -> {
                     try {
-                        if (indexMap.get(index) != null) {
-                            indexMap.remove(index, column);
-                        } else {
+                        if (!indexSet.remove(index)) {
                             statement.executeUpdate(SQLTemplate.createIndex(tClass, column));
+                            analyzeSet.add(tableName);
                         }
                     } catch (SQLException e) {
                         throw new RuntimeException(e);
                     }
                 });
-            }
-            indexMap.forEach((index, column) -> {
-                try {
-                    statement.executeUpdate(SQLTemplate.dropIndex(index));
-                } catch (SQLException e) {
-                    throw new RuntimeException(e);
+                reflect.getJsonIndexList((column, path) -> {
+                    try {
+                        if (!indexSet.remove(SQLTemplate.jsonIndexName(tableName, column, path))) {
+                            statement.executeUpdate(SQLTemplate.createJsonIndex(tableName, column, path));
+                            analyzeSet.add(tableName);
+                        }
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                Partitioning partitioning = partitioning(tClass);
+                if (partitioning != null) {
+                    for (Map.Entry<String, HashMap<String, String>> entry : tablesMap.entrySet()) {
+                        String partition = entry.getKey();
+                        Long partitionIndex = partitioning.parse(partition);
+                        if (partitionIndex == null) {
+                            continue;
+                        }
+                        partitioning.indexes().add(partitionIndex);
+                        reflect.getDBColumnsWithType((column, type) -> {
+                            if (entry.getValue().getOrDefault(column, null) == null) {
+                                try {
+                                    statement.executeUpdate(SQLTemplate.addTableColumn(partition, column, type));
+                                } catch (SQLException e) {
+                                    throw new RuntimeException(e);
+                                }
+                            }
+                        });
+                        reflect.getIndexList((index, column) -> {
+                            try {
+                                if (!indexSet.remove($("idx_%s_%s", partition, column))) {
+                                    statement.executeUpdate(SQLTemplate.createIndex(partition, column));
+                                    analyzeSet.add(partition);
+                                }
+                            } catch (SQLException e) {
+                                throw new RuntimeException(e);
+                            }
+                        });
+                        reflect.getJsonIndexList((column, path) -> {
+                            try {
+                                if (!indexSet.remove(SQLTemplate.jsonIndexName(partition, column, path))) {
+                                    statement.executeUpdate(SQLTemplate.createJsonIndex(partition, column, path));
+                                    analyzeSet.add(partition);
+                                }
+                            } catch (SQLException e) {
+                                throw new RuntimeException(e);
+                            }
+                        });
+                    }
                 }
-            });
+                List<String> fullTextColumns = reflect.getFullTextColumns();
+                HashMap<String, String> fullTextColumnTypeMap = tablesMap.getOrDefault(tableName + "_fts", null);
+                if (fullTextColumnTypeMap != null && !fullTextColumnTypeMap.keySet().equals(new HashSet<>(fullTextColumns))) {
+                    for (String sql : SQLTemplate.dropFullText(tClass)) {
+                        statement.executeUpdate(sql);
+                    }
+                    fullTextColumnTypeMap = null;
+                }
+                if (fullTextColumnTypeMap == null && !fullTextColumns.isEmpty()) {
+                    statement.executeUpdate(SQLTemplate.createFullText(tClass, fullTextColumns));
+                    for (String sql : SQLTemplate.createFullTextTriggers(tClass, fullTextColumns)) {
+                        statement.executeUpdate(sql);
+                    }
+                    statement.executeUpdate(SQLTemplate.rebuildFullText(tClass));
+                }
+                Aggregate aggregate = tClass.getAnnotation(Aggregate.class);
+                HashMap<String, String> summaryColumnTypeMap = tablesMap.getOrDefault(SQLTemplate.summaryTable(tClass), null);
+                if (summaryColumnTypeMap != null && (aggregate == null ||
+                        !summaryColumnTypeMap.keySet().equals(SQLTemplate.summaryColumns(aggregate)))) {
+                    for (String sql : SQLTemplate.dropSummary(tClass)) {
+                        statement.executeUpdate(sql);
+                    }
+                    summaryColumnTypeMap = null;
+                }
+                if (summaryColumnTypeMap == null && aggregate != null) {
+                    for (String sql : SQLTemplate.createSummary(tClass, aggregate)) {
+                        statement.executeUpdate(sql);
+                    }
+                }
+                if (aggregate != null) {
+                    summaries.put(tClass, aggregate);
+                } else {
+                    summaries.remove(tClass);
+                }
+                Expire expire = tClass.getAnnotation(Expire.class);
+                if (expire != null) {
+                    expiryPurger.register(tClass, expire, scheduler());
+                } else {
+                    expiryPurger.unregister(tClass);
+                }
+            }
+            for (String index : indexSet) {
+                statement.executeUpdate(SQLTemplate.dropIndex(index));
+            }
+            if (!analyzeSet.isEmpty()) {
+                analyzer.analyze(analyzeSet);
+            }
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -133,7 +325,24 @@ final class Core implements DB {
     public void drop(Class<?>... classes) {
         try (Statement statement = connection.createStatement()) {
             for (Class<?> tClass : classes) {
+                for (String sql : SQLTemplate.dropFullText(tClass)) {
+                    statement.executeUpdate(sql);
+                }
+                for (String sql : SQLTemplate.dropSummary(tClass)) {
+                    statement.executeUpdate(sql);
+                }
+                Partitioning partitioning = partitioning(tClass);
+                if (partitioning != null) {
+                    for (String table : tableNames()) {
+                        if (partitioning.parse(table) != null) {
+                            statement.executeUpdate($("drop table if exists %s;", table));
+                        }
+                    }
+                    partitionings.remove(tClass);
+                }
                 statement.executeUpdate(SQLTemplate.drop(tClass));
+                expiryPurger.unregister(tClass);
+                summaries.remove(tClass);
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -153,36 +362,152 @@ final class Core implements DB {
 
 
     @Override
-    public <T extends DataSupport<T>> void insert(T t) {
-        try (Statement statement = connection.createStatement()) {
+    public Metrics metrics() {
+        return metrics;
+    }
+
+
+    @Override
+    public void transaction(Runnable body) {
+        if (lock.isHeldByCurrentThread() && transactionDepth > 0) {
+            body.run();
+            return;
+        }
+        busyRetry.run(() -> {
             lock.lock();
-            t.createdAt = System.currentTimeMillis();
-            t.updatedAt = t.createdAt;
-            statement.executeUpdate(SQLTemplate.insert(t));
-            try (ResultSet result = statement.executeQuery("select last_insert_rowid()")) {
-                if (result.next()) {
-                    t.id = result.getLong(1);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("begin immediate;");
+                transactionDepth++;
+                boolean committed = false;
+                try {
+                    body.run();
+                    statement.execute("commit;");
+                    committed = true;
+                } finally {
+                    transactionDepth--;
+                    if (!committed) {
+                        try {
+                            statement.execute("rollback;");
+                        } catch (SQLException ignored) {
+                            // sqlite already rolled the transaction back
+                        }
+                    }
                 }
+            } finally {
+                lock.unlock();
             }
-        } catch (Exception e) {
+            return null;
+        });
+        afterWrite();
+    }
+
+
+    @Override
+    public void transaction(Object shardKey, Runnable body) {
+        transaction(body);
+    }
+
+
+    @Override
+    public Maintenance maintenance() {
+        return new Maintenance(new Connection[]{connection}, new ReentrantLock[]{lock}, config.vacuumStep);
+    }
+
+
+    @Override
+    public BackupProgress backupTo(Path path, Consumer<BackupOptions> consumer) {
+        BackupOptions options = new BackupOptions();
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
+        if (memoryPersister != null) {
+            lock.lock();
+            try {
+                return Backup.run(connection, path, options);
+            } finally {
+                lock.unlock();
+            }
+        }
+        try (Connection source = DriverManager.getConnection(url)) {
+            return Backup.run(source, path, options);
+        } catch (SQLException e) {
             throw new RuntimeException(e);
-        } finally {
-            lock.unlock();
         }
     }
 
 
+    @Override
+    public BackupProgress backupTo(Path path) {
+        return backupTo(path, null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void insert(T t) {
+        insert(t, false);
+    }
+
+
+    <T extends DataSupport<T>> void insert(T t, boolean withId) {
+        retry(() -> {
+            lock.lock();
+            try (Statement statement = connection.createStatement()) {
+                t.createdAt = System.currentTimeMillis();
+                t.updatedAt = t.createdAt;
+                String tableName = t.getClass().getSimpleName().toLowerCase();
+                boolean explicitId = withId;
+                Partitioning partitioning = partitioning(t.getClass());
+                if (partitioning != null) {
+                    long index = partitioning.index(t.createdAt);
+                    tableName = partition(statement, t.getClass(), partitioning, index);
+                    if (!explicitId) {
+                        String s = $("select ifnull(max(id), %d) + 1 from %s;", partitioning.firstId(index), tableName);
+                        try (ResultSet result = statement.executeQuery(s)) {
+                            t.id = result.next() ? result.getLong(1) : null;
+                        }
+                        explicitId = true;
+                    }
+                }
+                List<Object> values = new ArrayList<>();
+                try (PreparedStatement preparedStatement = connection.prepareStatement(SQLTemplate.insert(tableName, t, explicitId, values))) {
+                    bind(preparedStatement, values);
+                    preparedStatement.executeUpdate();
+                }
+                try (ResultSet result = statement.executeQuery("select last_insert_rowid()")) {
+                    if (result.next()) {
+                        t.id = result.getLong(1);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        });
+        afterWrite();
+    }
+
+
     @Override
     public <T extends DataSupport<T>> void update(T t, String predicate, Object... args) {
-        try (Statement statement = connection.createStatement()) {
+        Options options = new Options().where(predicate, args);
+        retry(() -> {
             lock.lock();
-            t.updatedAt = System.currentTimeMillis();
-            statement.executeUpdate(SQLTemplate.update(t, new Options().where(predicate, args)));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        } finally {
-            lock.unlock();
-        }
+            try (Deadline deadline = Deadline.start(timeout(null))) {
+                t.updatedAt = System.currentTimeMillis();
+                for (String tableName : targets(t.getClass())) {
+                    List<Object> values = new ArrayList<>();
+                    String sql = SQLTemplate.update(tableName, t, options, values);
+                    try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                        bind(preparedStatement, values);
+                        preparedStatement.executeUpdate();
+                    }
+                }
+            } catch (SQLException e) {
+                throw Deadline.translate(e);
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        });
+        afterWrite();
     }
 
 
@@ -194,15 +519,98 @@ final class Core implements DB {
 
     @Override
     public <T extends DataSupport<T>> void delete(Class<T> tClass, String predicate, Object... args) {
-        String sql = SQLTemplate.delete(tClass, new Options().where(predicate, args));
-        try (Statement statement = connection.createStatement()) {
+        if (predicate == null && changeFeed != null && changeFeed.isSubscribed(tClass.getSimpleName().toLowerCase())) {
+            predicate = "1";
+        }
+        Options options = new Options().where(predicate, args);
+        retry(() -> {
             lock.lock();
-            statement.executeUpdate(sql);
+            try (Deadline deadline = Deadline.start(timeout(null)); Statement statement = connection.createStatement()) {
+                for (String tableName : targets(tClass)) {
+                    statement.executeUpdate(SQLTemplate.delete(tableName, options));
+                }
+            } catch (SQLException e) {
+                throw Deadline.translate(e);
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        });
+        afterWrite();
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long chunkedDelete(Class<T> tClass, int chunkSize, String predicate, Object... args) {
+        return chunkedDelete(tClass, chunkSize, Long.MAX_VALUE, predicate, args);
+    }
+
+
+    <T extends DataSupport<T>> long chunkedDelete(Class<T> tClass, int chunkSize, long limit, String predicate, Object... args) {
+        String where = (predicate != null) ? new Options().where(predicate, args).wherePredicate : "1";
+        long[] deleted = {0};
+        for (String tableName : targets(tClass)) {
+            chunkedDelete(tableName, chunkSize, limit, where, deleted);
+        }
+        return deleted[0];
+    }
+
+
+    private void chunkedDelete(String tableName, int chunkSize, long limit, String where, long[] deleted) {
+        long lastId = Long.MIN_VALUE;
+        while (deleted[0] < limit) {
+            long size = Math.min(chunkSize, limit - deleted[0]);
+            long lowerId = lastId;
+            Long upper = retry(() -> {
+                lock.lock();
+                try (Deadline deadline = Deadline.start(timeout(null)); Statement statement = connection.createStatement()) {
+                    String bound = $("select id from %s where id > %d and (%s) order by id limit 1 offset %d;", tableName, lowerId, where, size - 1);
+                    Long upperId;
+                    try (ResultSet resultSet = statement.executeQuery(bound)) {
+                        upperId = resultSet.next() ? resultSet.getLong(1) : null;
+                    }
+                    String range = (upperId != null) ? $("id > %d and id <= %d", lowerId, upperId) : $("id > %d", lowerId);
+                    deleted[0] += statement.executeUpdate($("delete from %s where %s and (%s);", tableName, range, where));
+                    return upperId;
+                } catch (SQLException e) {
+                    throw Deadline.translate(e);
+                } finally {
+                    lock.unlock();
+                }
+            });
+            afterWrite();
+            if (upper == null) {
+                break;
+            }
+            lastId = upper;
+            Thread.yield();
+        }
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> int dropPartitions(Class<T> tClass, long beforeMillis) {
+        Partitioning partitioning = partitioning(tClass);
+        if (partitioning == null) {
+            throw new IllegalArgumentException(tClass.getSimpleName() + " is not partitioned");
+        }
+        int dropped = 0;
+        lock.lock();
+        try (Statement statement = connection.createStatement()) {
+            for (Long index : partitioning.indexes()) {
+                if (partitioning.start(index + 1) > beforeMillis) {
+                    break;
+                }
+                statement.executeUpdate($("drop table if exists %s;", partitioning.table(index)));
+                partitioning.indexes().remove(index);
+                dropped++;
+            }
         } catch (Exception e) {
             throw new RuntimeException(e);
         } finally {
             lock.unlock();
         }
+        return dropped;
     }
 
 
@@ -230,20 +638,147 @@ final class Core implements DB {
     public <T extends DataSupport<T>> List<T> find(Class<T> tClass, Consumer<Options> consumer) {
         Options options = (consumer != null) ? new Options() : null;
         Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
-        String sql = SQLTemplate.query(tClass, options);
-        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
-            List<T> list = new ArrayList<>();
+        List<T> list = new ArrayList<>();
+        scan(tClass, options, false, list::add);
+        Relations.load(this, tClass, list, options);
+        return list;
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void forEach(Class<T> tClass, Consumer<Options> options, boolean reuse, Consumer<T> consumer) {
+        Options o = (options != null) ? new Options() : null;
+        Optional.ofNullable(options).ifPresent(c -> c.accept(o));
+        if (o == null || o.includeFields == null) {
+            scan(tClass, o, reuse, consumer);
+            return;
+        }
+        List<T> batch = new ArrayList<>();
+        scan(tClass, o, false, t -> {
+            batch.add(t);
+            if (batch.size() == Relations.BATCH_SIZE) {
+                Relations.load(this, tClass, batch, o);
+                batch.forEach(consumer);
+                batch.clear();
+            }
+        });
+        Relations.load(this, tClass, batch, o);
+        batch.forEach(consumer);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void forEach(Class<T> tClass, Consumer<Options> options, Consumer<T> consumer) {
+        forEach(tClass, options, false, consumer);
+    }
+
+
+    private <T extends DataSupport<T>> void scan(Class<T> tClass, Options options, boolean reuse, Consumer<T> consumer) {
+        String sql = SQLTemplate.query(source(tClass, options), options);
+        long start = System.nanoTime();
+        try (Deadline deadline = Deadline.start(timeout(options)); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            Reflect<T> reflect = new Reflect<>(tClass);
+            Set<String> columns = Reflect.getSelectColumns(options);
+            T reused = reuse ? reflect.newEntity() : null;
+            long rows = 0;
             while (resultSet.next()) {
-                T t = Reflect.toEntity(tClass, options, resultSet);
-                Optional.ofNullable(t).ifPresent(list::add);
+                consumer.accept(reflect.fill(reuse ? reused : reflect.newEntity(), columns, resultSet));
+                rows++;
             }
-            return list;
+            slowQueryLog.record(sql, start, rows);
         } catch (Exception e) {
-            throw new RuntimeException(e);
+            throw Deadline.translate(e);
         }
     }
 
 
+    @Override
+    public <T extends DataSupport<T>> Publisher<T> publish(Class<T> tClass, Consumer<Options> consumer) {
+        Options options = (consumer != null) ? new Options() : null;
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
+        Relations.reject(options, "publish");
+        return new QueryPublisher<>(queryExecutor(), () -> cursor(tClass, options));
+    }
+
+
+    <T extends DataSupport<T>> QueryPublisher.Cursor<T> cursor(Class<T> tClass, Options options) throws SQLException {
+        Statement statement = connection.createStatement();
+        ResultSet resultSet;
+        Deadline deadline = Deadline.start(timeout(options));
+        try {
+            resultSet = statement.executeQuery(SQLTemplate.query(source(tClass, options), options));
+        } catch (SQLException e) {
+            statement.close();
+            throw Deadline.translate(e);
+        } finally {
+            deadline.close();
+        }
+        Reflect<T> reflect = new Reflect<>(tClass);
+        Set<String> columns = Reflect.getSelectColumns(options);
+        return new QueryPublisher.Cursor<T>() {
+            @Override
+            public T next() {
+                try (Deadline d = deadline.resume()) {
+                    return resultSet.next() ? reflect.fill(reflect.newEntity(), columns, resultSet) : null;
+                } catch (SQLException e) {
+                    throw Deadline.translate(e);
+                }
+            }
+
+            @Override
+            public void cancel() {
+                try {
+                    statement.cancel();
+                } catch (SQLException ignored) {
+                }
+            }
+
+            @Override
+            public void close() {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                }
+            }
+        };
+    }
+
+
+    ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            synchronized (this) {
+                if (scheduler == null) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "jsqlite-scheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return scheduler;
+    }
+
+
+    Executor queryExecutor() {
+        if (config.queryExecutor != null) {
+            return config.queryExecutor;
+        }
+        if (queryExecutor == null) {
+            synchronized (this) {
+                if (queryExecutor == null) {
+                    queryExecutor = Executors.newCachedThreadPool(r -> {
+                        Thread thread = new Thread(r, "jsqlite-query");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return queryExecutor;
+    }
+
+
     @Override
     public <T extends DataSupport<T>> List<T> find(Class<T> tClass, List<Long> ids) {
         StringBuilder builder = new StringBuilder(String.valueOf(ids));
@@ -266,7 +801,7 @@ final class Core implements DB {
 
     @Override
     public <T extends DataSupport<T>> T findOne(Class<T> tClass, String predicate, Object... args) {
-        List<T> list = find(tClass, options -> options.where(predicate, args));
+        List<T> list = find(tClass, options -> options.where(predicate, args).limit(1));
         return (!list.isEmpty()) ? list.get(0) : null;
     }
 
@@ -279,7 +814,7 @@ final class Core implements DB {
 
     @Override
     public <T extends DataSupport<T>> T first(Class<T> tClass, String predicate, Object... args) {
-        List<T> list = find(tClass, options -> options.where(predicate, args).order("id", Options.ASC));
+        List<T> list = find(tClass, options -> options.where(predicate, args).order("id", Options.ASC).limit(1));
         return (!list.isEmpty()) ? list.get(0) : null;
     }
 
@@ -292,7 +827,7 @@ final class Core implements DB {
 
     @Override
     public <T extends DataSupport<T>> T last(Class<T> tClass, String predicate, Object... args) {
-        List<T> list = find(tClass, options -> options.where(predicate, args).order("id", Options.DESC));
+        List<T> list = find(tClass, options -> options.where(predicate, args).order("id", Options.DESC).limit(1));
         return (!list.isEmpty()) ? list.get(0) : null;
     }
 
@@ -304,13 +839,273 @@ final class Core implements DB {
 
 
     @Override
-    public <T extends DataSupport<T>> long count(Class<T> tClass, String predicate, Object... args) {
-        String s = SQLTemplate.query(tClass, new Options().select("count(*)").where(predicate, args));
-        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(s)) {
-            return (resultSet.next()) ? resultSet.getLong(1) : 0;
+    public <T extends DataSupport<T>> List<T> search(Class<T> tClass, String query, Consumer<Options> consumer) {
+        Options options = new Options();
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
+        List<String> columns = new Reflect<>(tClass).getFullTextColumns();
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException(tClass.getSimpleName() + " has no full text columns");
+        }
+        if (options.orderColumns == null) {
+            options.order("fts_rank");
+        }
+        int snippetIndex = (options.snippetColumn != null) ? columns.indexOf(options.snippetColumn) : -1;
+        String sql = SQLTemplate.search(tClass, query, options, snippetIndex);
+        long start = System.nanoTime();
+        try (Deadline deadline = Deadline.start(timeout(options)); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            Reflect<T> reflect = new Reflect<>(tClass);
+            Set<String> selectColumns = Reflect.getSelectColumns(options);
+            List<T> list = new ArrayList<>();
+            while (resultSet.next()) {
+                T t = reflect.fill(reflect.newEntity(), selectColumns, resultSet);
+                if (snippetIndex >= 0) {
+                    reflect.setValue(options.snippetColumn, resultSet.getString("fts_snippet"));
+                }
+                list.add(t);
+            }
+            slowQueryLog.record(sql, start, list.size());
+            return list;
+        } catch (Exception e) {
+            throw Deadline.translate(e);
+        }
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> List<T> search(Class<T> tClass, String query) {
+        return search(tClass, query, null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long exportTo(Class<T> tClass, OutputStream outputStream, Format format) {
+        return exportTo(tClass, outputStream, format, true);
+    }
+
+
+    <T extends DataSupport<T>> long exportTo(Class<T> tClass, OutputStream outputStream, Format format, boolean header) {
+        return Bulk.export(connection, tClass, outputStream, format, header);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long importFrom(Class<T> tClass, InputStream inputStream, Format format, Consumer<BulkOptions> consumer) {
+        BulkOptions options = new BulkOptions();
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
+        long rows = Bulk.load(new Connection[]{connection}, new ReentrantLock[]{lock}, (columns, values) -> 0,
+                tClass, inputStream, format, options);
+        afterWrite();
+        return rows;
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long importFrom(Class<T> tClass, InputStream inputStream, Format format) {
+        return importFrom(tClass, inputStream, format, null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void subscribe(Class<T> tClass, Consumer<List<Change>> listener) {
+        if (changeFeed == null) {
+            synchronized (this) {
+                if (changeFeed == null) {
+                    changeFeed = new ChangeFeed(connection, config);
+                }
+            }
+        }
+        changeFeed.subscribe(tClass.getSimpleName().toLowerCase(), listener);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void unsubscribe(Class<T> tClass, Consumer<List<Change>> listener) {
+        Optional.ofNullable(changeFeed).ifPresent(c -> c.unsubscribe(tClass.getSimpleName().toLowerCase(), listener));
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long[] longColumn(Class<T> tClass, String column, Consumer<Options> consumer) {
+        Options options = columnOptions(column, consumer);
+        String sql = SQLTemplate.query(source(tClass, options), options);
+        long start = System.nanoTime();
+        try (Deadline deadline = Deadline.start(timeout(options)); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            long[] buffer = new long[256];
+            int size = 0;
+            while (resultSet.next()) {
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, size << 1);
+                }
+                buffer[size++] = resultSet.getLong(1);
+            }
+            slowQueryLog.record(sql, start, size);
+            return Arrays.copyOf(buffer, size);
+        } catch (SQLException e) {
+            throw Deadline.translate(e);
+        }
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long[] longColumn(Class<T> tClass, String column) {
+        return longColumn(tClass, column, null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> double[] doubleColumn(Class<T> tClass, String column, Consumer<Options> consumer) {
+        Options options = columnOptions(column, consumer);
+        String sql = SQLTemplate.query(source(tClass, options), options);
+        long start = System.nanoTime();
+        try (Deadline deadline = Deadline.start(timeout(options)); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            double[] buffer = new double[256];
+            int size = 0;
+            while (resultSet.next()) {
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, size << 1);
+                }
+                buffer[size++] = resultSet.getDouble(1);
+            }
+            slowQueryLog.record(sql, start, size);
+            return Arrays.copyOf(buffer, size);
+        } catch (SQLException e) {
+            throw Deadline.translate(e);
+        }
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> double[] doubleColumn(Class<T> tClass, String column) {
+        return doubleColumn(tClass, column, null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void columns(Class<T> tClass, Consumer<Options> options, int batchSize, Consumer<Columns> consumer, String... columns) {
+        Columns batch = Columns.allocate(new Reflect<>(tClass), batchSize, columns);
+        columns(tClass, columnsOptions(options, columns), batch, consumer);
+        if (batch.size() > 0) {
+            consumer.accept(batch);
+        }
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> Columns columns(Class<T> tClass, Consumer<Options> options, Path file, String... columns) {
+        Options o = columnsOptions(options, columns);
+        boolean began = beginSnapshot();
+        try {
+            Columns export = Columns.map(new Reflect<>(tClass), file, rows(tClass, o), columns);
+            columns(tClass, o, export, null);
+            export.force();
+            return export;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            endSnapshot(began);
+        }
+    }
+
+
+    boolean beginSnapshot() {
+        lock.lock();
+        if (transactionDepth > 0) {
+            return false;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("begin;");
+            return true;
+        } catch (SQLException e) {
+            lock.unlock();
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    void endSnapshot(boolean began) {
+        try (Statement statement = connection.createStatement()) {
+            if (began) {
+                statement.execute("commit;");
+            }
         } catch (SQLException e) {
             throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    <T extends DataSupport<T>> void columns(Class<T> tClass, Options options, Columns columns, Consumer<Columns> consumer) {
+        String sql = query(tClass, options);
+        long start = System.nanoTime();
+        try (Deadline deadline = Deadline.start(timeout(options)); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            long rows = 0;
+            while ((consumer != null || !columns.full()) && resultSet.next()) {
+                if (columns.full()) {
+                    consumer.accept(columns);
+                    columns.clear();
+                }
+                columns.append(resultSet);
+                rows++;
+            }
+            slowQueryLog.record(sql, start, rows);
+        } catch (SQLException e) {
+            throw Deadline.translate(e);
+        }
+    }
+
+
+    long rows(Class<?> tClass, Options options) {
+        String sql = query(tClass, options);
+        String s = $("select count(*) from (%s);", sql.substring(0, sql.length() - 1));
+        try (Deadline deadline = Deadline.start(timeout(options)); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(s)) {
+            return (resultSet.next()) ? resultSet.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw Deadline.translate(e);
+        }
+    }
+
+
+    static Options columnsOptions(Consumer<Options> consumer, String... columns) {
+        Options options = new Options();
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
+        options.select(columns);
+        return options;
+    }
+
+
+    private static Options columnOptions(String column, Consumer<Options> consumer) {
+        Options options = new Options();
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
+        options.select(column);
+        String notNull = column + " is not null";
+        options.wherePredicate = (options.wherePredicate != null) ? $("(%s) and %s", options.wherePredicate, notNull) : notNull;
+        return options;
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> InputStream openBlob(Class<T> tClass, String column, long id) {
+        return new BlobInputStream(connection, tClass.getSimpleName().toLowerCase(), column, id);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long count(Class<T> tClass, String predicate, Object... args) {
+        String s = summaryQuery(tClass, "row_count", predicate, args);
+        if (s == null) {
+            return count(tClass, options -> options.where(predicate, args));
         }
+        Number count = (Number) aggregate(s, timeout(null), 0);
+        return (count != null) ? count.longValue() : 0;
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long count(Class<T> tClass, Consumer<Options> consumer) {
+        Options options = aggregateOptions("count(*)", consumer);
+        Number count = (Number) aggregate(query(tClass, options), timeout(options), 0);
+        return (count != null) ? count.longValue() : 0;
     }
 
 
@@ -321,16 +1116,33 @@ final class Core implements DB {
 
 
     @Override
-    public <T extends DataSupport<T>> double average(Class<T> tClass, String column, String predicate, Object... args) {
-        String s = SQLTemplate.query(tClass, new Options().select(String.format("avg(%s)", column)).where(predicate, args));
-        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(s)) {
-            return (resultSet.next()) ? resultSet.getDouble(1) : 0;
+    public <T extends DataSupport<T>> boolean exists(Class<T> tClass, String predicate, Object... args) {
+        String s = query(tClass, new Options().select("1").where(predicate, args).limit(1));
+        long start = System.nanoTime();
+        try (Deadline deadline = Deadline.start(timeout(null)); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(s)) {
+            boolean exists = resultSet.next();
+            slowQueryLog.record(s, start, exists ? 1 : 0);
+            return exists;
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            throw Deadline.translate(e);
         }
     }
 
 
+    @Override
+    public <T extends DataSupport<T>> double average(Class<T> tClass, String column, String predicate, Object... args) {
+        return average(tClass, column, options -> options.where(predicate, args));
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> double average(Class<T> tClass, String column, Consumer<Options> consumer) {
+        Options options = aggregateOptions(String.format("avg(%s)", column), consumer);
+        Number average = (Number) aggregate(query(tClass, options), timeout(options), 0);
+        return (average != null) ? average.doubleValue() : 0;
+    }
+
+
     @Override
     public <T extends DataSupport<T>> double average(Class<T> tClass, String column) {
         return average(tClass, column, null, (Object) null);
@@ -339,12 +1151,18 @@ final class Core implements DB {
 
     @Override
     public <T extends DataSupport<T>> Number sum(Class<T> tClass, String column, String predicate, Object... args) {
-        String s = SQLTemplate.query(tClass, new Options().select(String.format("sum(%s)", column)).where(predicate, args));
-        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(s)) {
-            return (resultSet.next()) ? (Number) resultSet.getObject(1) : 0;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        String s = summaryQuery(tClass, "sum_" + column, predicate, args);
+        if (s == null) {
+            return sum(tClass, column, options -> options.where(predicate, args));
         }
+        return (Number) aggregate(s, timeout(null), 0);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> Number sum(Class<T> tClass, String column, Consumer<Options> consumer) {
+        Options options = aggregateOptions(String.format("sum(%s)", column), consumer);
+        return (Number) aggregate(query(tClass, options), timeout(options), 0);
     }
 
 
@@ -356,9 +1174,21 @@ final class Core implements DB {
 
     @Override
     public <T extends DataSupport<T>> Number max(Class<T> tClass, String column, String predicate, Object... args) {
-        String s = SQLTemplate.query(tClass, new Options().select(String.format("max(%s)", column)).where(predicate, args));
+        return max(tClass, column, options -> options.where(predicate, args));
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> Number max(Class<T> tClass, String column, Consumer<Options> consumer) {
+        Options options = aggregateOptions(String.format("max(%s)", column), consumer);
+        return (Number) aggregate(query(tClass, options), timeout(options), 0);
+    }
+
+
+    long maxId(Class<?> tClass) {
+        String s = query(tClass, new Options().select("max(id)"));
         try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(s)) {
-            return (resultSet.next()) ? (Number) resultSet.getObject(1) : 0;
+            return (resultSet.next()) ? resultSet.getLong(1) : 0;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -373,12 +1203,14 @@ final class Core implements DB {
 
     @Override
     public <T extends DataSupport<T>> Number min(Class<T> tClass, String column, String predicate, Object... args) {
-        String s = SQLTemplate.query(tClass, new Options().select(String.format("min(%s)", column)).where(predicate, args));
-        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(s)) {
-            return (resultSet.next()) ? (Number) resultSet.getObject(1) : 0;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        return min(tClass, column, options -> options.where(predicate, args));
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> Number min(Class<T> tClass, String column, Consumer<Options> consumer) {
+        Options options = aggregateOptions(String.format("min(%s)", column), consumer);
+        return (Number) aggregate(query(tClass, options), timeout(options), 0);
     }
 
 
@@ -388,4 +1220,180 @@ final class Core implements DB {
     }
 
 
+    private Object aggregate(String sql, long timeout, Object absent) {
+        long start = System.nanoTime();
+        try (Deadline deadline = Deadline.start(timeout); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            Object value = (resultSet.next()) ? resultSet.getObject(1) : absent;
+            slowQueryLog.record(sql, start, 1);
+            return value;
+        } catch (SQLException e) {
+            throw Deadline.translate(e);
+        }
+    }
+
+
+    private static Options aggregateOptions(String select, Consumer<Options> consumer) {
+        Options options = new Options();
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
+        options.select(select);
+        return options;
+    }
+
+
+    private static String $(String format, Object... objects) {
+        return String.format(format, objects);
+    }
+
+
+    private static void bind(PreparedStatement statement, List<Object> values) throws SQLException, IOException {
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+            if (value instanceof InputStream) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                for (int n; (n = ((InputStream) value).read(buffer)) != -1; ) {
+                    outputStream.write(buffer, 0, n);
+                }
+                statement.setBytes(i + 1, outputStream.toByteArray());
+            } else {
+                statement.setObject(i + 1, value);
+            }
+        }
+    }
+
+
+    private Partitioning partitioning(Class<?> tClass) {
+        Partition partition = tClass.getAnnotation(Partition.class);
+        return (partition != null) ? partitionings.computeIfAbsent(tClass, c -> {
+            Partitioning partitioning = new Partitioning(c, partition);
+            try {
+                for (String table : tableNames()) {
+                    Optional.ofNullable(partitioning.parse(table)).ifPresent(partitioning.indexes()::add);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            return partitioning;
+        }) : null;
+    }
+
+
+    private String partition(Statement statement, Class<?> tClass, Partitioning partitioning, long index) throws SQLException {
+        String tableName = partitioning.table(index);
+        if (!partitioning.indexes().contains(index)) {
+            statement.executeUpdate(SQLTemplate.create(tableName, tClass));
+            List<String> sqlList = new ArrayList<>();
+            Reflect<?> reflect = new Reflect<>(tClass);
+            reflect.getIndexList((name, column) -> sqlList.add(SQLTemplate.createIndex(tableName, column)));
+            reflect.getJsonIndexList((column, path) -> sqlList.add(SQLTemplate.createJsonIndex(tableName, column, path)));
+            for (String sql : sqlList) {
+                statement.executeUpdate(sql);
+            }
+            partitioning.indexes().add(index);
+        }
+        return tableName;
+    }
+
+
+    private List<String> tableNames() throws SQLException {
+        List<String> tables = new ArrayList<>();
+        String s = SQLTemplate.query("sqlite_master", new Options().select("name").where("type = ?", "table"));
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(s)) {
+            while (resultSet.next()) {
+                tables.add(resultSet.getString(1));
+            }
+        }
+        return tables;
+    }
+
+
+    private List<String> targets(Class<?> tClass) {
+        List<String> tables = new ArrayList<>();
+        tables.add(tClass.getSimpleName().toLowerCase());
+        Optional.ofNullable(partitioning(tClass)).ifPresent(p -> tables.addAll(p.tables(null, null)));
+        return tables;
+    }
+
+
+    private String source(Class<?> tClass, Options options) {
+        String tableName = tClass.getSimpleName().toLowerCase();
+        Partitioning partitioning = partitioning(tClass);
+        if (partitioning == null) {
+            return tableName;
+        }
+        List<String> tables = partitioning.tables(options != null ? options.rangeFrom : null, options != null ? options.rangeTo : null);
+        if (tables.isEmpty()) {
+            return tableName;
+        }
+        List<String> columns = new ArrayList<>();
+        new Reflect<>(tClass).getDBColumnsWithType((column, type) -> columns.add(column));
+        String selectString = $("select %s from ", String.join(", ", columns));
+        StringJoiner joiner = new StringJoiner(" union all ", "(", ") as " + tableName);
+        joiner.add(selectString + tableName);
+        tables.forEach(table -> joiner.add(selectString + table));
+        return joiner.toString();
+    }
+
+
+    private String query(Class<?> tClass, Options options) {
+        return SQLTemplate.query(source(tClass, options), options);
+    }
+
+
+    private <R> R retry(Callable<R> body) {
+        if (lock.isHeldByCurrentThread() && transactionDepth > 0) {
+            try {
+                return body.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return busyRetry.run(body);
+    }
+
+
+    private long timeout(Options options) {
+        return (options != null && options.timeoutMillis > 0) ? options.timeoutMillis : config.queryTimeout;
+    }
+
+
+    private String summaryQuery(Class<?> tClass, String column, String predicate, Object... args) {
+        Aggregate aggregate = summaries.get(tClass);
+        if (aggregate == null || partitioning(tClass) != null || (column.startsWith("sum_") && !Arrays.asList(aggregate.sum()).contains(column.substring(4)))) {
+            return null;
+        }
+        Options options = new Options().select($("sum(%s)", column));
+        if (predicate == null) {
+            return SQLTemplate.query(SQLTemplate.summaryTable(tClass), options);
+        }
+        String group = aggregate.groupBy();
+        if (!group.isEmpty() && args.length == 1 && args[0] != null &&
+                predicate.replace(" ", "").equalsIgnoreCase(group + "=?")) {
+            return SQLTemplate.query(SQLTemplate.summaryTable(tClass), options.where(SQLTemplate.summaryKey(aggregate) + " = ?", args[0]));
+        }
+        return null;
+    }
+
+
+    private void afterWrite() {
+        lastWrite = System.currentTimeMillis();
+        if (lock.isHeldByCurrentThread() && transactionDepth > 0) {
+            return;
+        }
+        Optional.ofNullable(changeFeed).ifPresent(ChangeFeed::awaitCapacity);
+    }
+
+
+    Connection connection() {
+        return connection;
+    }
+
+
+    ReentrantLock lock() {
+        return lock;
+    }
+
+
 }
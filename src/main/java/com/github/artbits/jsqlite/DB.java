@@ -16,7 +16,11 @@
 
 package com.github.artbits.jsqlite;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Consumer;
 
 public interface DB extends AutoCloseable {
@@ -25,6 +29,12 @@ public interface DB extends AutoCloseable {
     void tables(Class<?>... classes);
     void drop(Class<?>... classes);
     String version();
+    Metrics metrics();
+    Maintenance maintenance();
+    void transaction(Runnable body);
+    void transaction(Object shardKey, Runnable body);
+    BackupProgress backupTo(Path path, Consumer<BackupOptions> consumer);
+    BackupProgress backupTo(Path path);
     <T extends DataSupport<T>> void insert(T t);
     <T extends DataSupport<T>> void update(T t, String predicate, Object... args);
     <T extends DataSupport<T>> void update(T t);
@@ -32,7 +42,12 @@ public interface DB extends AutoCloseable {
     <T extends DataSupport<T>> void delete(Class<T> tClass, List<Long> ids);
     <T extends DataSupport<T>> void delete(Class<T> tClass, Long... ids);
     <T extends DataSupport<T>> void deleteAll(Class<T> tClass);
+    <T extends DataSupport<T>> long chunkedDelete(Class<T> tClass, int chunkSize, String predicate, Object... args);
+    <T extends DataSupport<T>> int dropPartitions(Class<T> tClass, long beforeMillis);
     <T extends DataSupport<T>> List<T> find(Class<T> tClass, Consumer<Options> consumer);
+    <T extends DataSupport<T>> void forEach(Class<T> tClass, Consumer<Options> options, boolean reuse, Consumer<T> consumer);
+    <T extends DataSupport<T>> void forEach(Class<T> tClass, Consumer<Options> options, Consumer<T> consumer);
+    <T extends DataSupport<T>> Publisher<T> publish(Class<T> tClass, Consumer<Options> consumer);
     <T extends DataSupport<T>> List<T> find(Class<T> tClass, List<Long> ids);
     <T extends DataSupport<T>> List<T> find(Class<T> tClass, Long... ids);
     <T extends DataSupport<T>> List<T> findAll(Class<T> tClass);
@@ -42,18 +57,54 @@ public interface DB extends AutoCloseable {
     <T extends DataSupport<T>> T first(Class<T> tClass);
     <T extends DataSupport<T>> T last(Class<T> tClass, String predicate, Object... args);
     <T extends DataSupport<T>> T last(Class<T> tClass);
+    <T extends DataSupport<T>> List<T> search(Class<T> tClass, String query, Consumer<Options> consumer);
+    <T extends DataSupport<T>> List<T> search(Class<T> tClass, String query);
+    <T extends DataSupport<T>> long exportTo(Class<T> tClass, OutputStream outputStream, Format format);
+    <T extends DataSupport<T>> long importFrom(Class<T> tClass, InputStream inputStream, Format format, Consumer<BulkOptions> consumer);
+    <T extends DataSupport<T>> long importFrom(Class<T> tClass, InputStream inputStream, Format format);
+    <T extends DataSupport<T>> void subscribe(Class<T> tClass, Consumer<List<Change>> listener);
+    <T extends DataSupport<T>> void unsubscribe(Class<T> tClass, Consumer<List<Change>> listener);
+    <T extends DataSupport<T>> long[] longColumn(Class<T> tClass, String column, Consumer<Options> consumer);
+    <T extends DataSupport<T>> long[] longColumn(Class<T> tClass, String column);
+    <T extends DataSupport<T>> double[] doubleColumn(Class<T> tClass, String column, Consumer<Options> consumer);
+    <T extends DataSupport<T>> double[] doubleColumn(Class<T> tClass, String column);
+    <T extends DataSupport<T>> void columns(Class<T> tClass, Consumer<Options> options, int batchSize, Consumer<Columns> consumer, String... columns);
+    <T extends DataSupport<T>> Columns columns(Class<T> tClass, Consumer<Options> options, Path file, String... columns);
+    <T extends DataSupport<T>> InputStream openBlob(Class<T> tClass, String column, long id);
     <T extends DataSupport<T>> long count(Class<T> tClass, String predicate, Object... args);
+    <T extends DataSupport<T>> long count(Class<T> tClass, Consumer<Options> consumer);
     <T extends DataSupport<T>> long count(Class<T> tClass);
+    <T extends DataSupport<T>> boolean exists(Class<T> tClass, String predicate, Object... args);
     <T extends DataSupport<T>> double average(Class<T> tClass, String column, String predicate, Object... args);
+    <T extends DataSupport<T>> double average(Class<T> tClass, String column, Consumer<Options> consumer);
     <T extends DataSupport<T>> double average(Class<T> tClass, String column);
     <T extends DataSupport<T>> Number sum(Class<T> tClass, String column, String predicate, Object... args);
+    <T extends DataSupport<T>> Number sum(Class<T> tClass, String column, Consumer<Options> consumer);
     <T extends DataSupport<T>> Number sum(Class<T> tClass, String column);
     <T extends DataSupport<T>> Number max(Class<T> tClass, String column, String predicate, Object... args);
+    <T extends DataSupport<T>> Number max(Class<T> tClass, String column, Consumer<Options> consumer);
     <T extends DataSupport<T>> Number max(Class<T> tClass, String column);
     <T extends DataSupport<T>> Number min(Class<T> tClass, String column, String predicate, Object... args);
+    <T extends DataSupport<T>> Number min(Class<T> tClass, String column, Consumer<Options> consumer);
     <T extends DataSupport<T>> Number min(Class<T> tClass, String column);
 
     static DB connect(String path) {
-        return new Core(path);
+        return new Core(path, new Config());
+    }
+
+    static DB connect(String path, Consumer<Config> consumer) {
+        Config config = new Config();
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(config));
+        return new Core(path, config);
+    }
+
+    static DB connect(List<String> paths) {
+        return new ShardedDB(paths, new Config());
+    }
+
+    static DB connect(List<String> paths, Consumer<Config> consumer) {
+        Config config = new Config();
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(config));
+        return new ShardedDB(paths, config);
     }
 }
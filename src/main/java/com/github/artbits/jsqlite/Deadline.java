@@ -0,0 +1,120 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import org.sqlite.ProgressHandler;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+final class Deadline implements AutoCloseable {
+
+    private final static ThreadLocal<Deadline> current = new ThreadLocal<>();
+    private final static ThreadLocal<Deadline> expired = new ThreadLocal<>();
+    private final static ThreadLocal<Boolean> interrupted = new ThreadLocal<>();
+
+    private final long millis;
+    private final long expiresAt;
+    private final Deadline previous;
+
+
+    private Deadline(long millis, long expiresAt, Deadline previous) {
+        this.millis = millis;
+        this.expiresAt = expiresAt;
+        this.previous = previous;
+    }
+
+
+    static void install(Connection connection) throws SQLException {
+        ProgressHandler.setHandler(connection, 10_000, new ProgressHandler() {
+            @Override
+            protected int progress() {
+                return Deadline.progress();
+            }
+        });
+    }
+
+
+    static Deadline start(long millis) {
+        Deadline previous = current.get();
+        Deadline deadline;
+        if (millis > 0 && (previous == null || previous.millis <= 0 || System.nanoTime() + millis * 1_000_000 - previous.expiresAt < 0)) {
+            deadline = new Deadline(millis, System.nanoTime() + millis * 1_000_000, previous);
+        } else if (previous != null) {
+            deadline = new Deadline(previous.millis, previous.expiresAt, previous);
+        } else {
+            deadline = new Deadline(0, 0, null);
+        }
+        current.set(deadline);
+        expired.remove();
+        interrupted.remove();
+        return deadline;
+    }
+
+
+    Deadline resume() {
+        Deadline deadline = new Deadline(millis, expiresAt, current.get());
+        current.set(deadline);
+        expired.remove();
+        interrupted.remove();
+        return deadline;
+    }
+
+
+    static RuntimeException translate(Exception e) {
+        Deadline deadline = expired.get();
+        boolean wasInterrupted = interrupted.get() != null;
+        expired.remove();
+        interrupted.remove();
+        if (deadline != null && e instanceof SQLException) {
+            return new QueryTimeoutException(deadline.millis, e);
+        }
+        if (wasInterrupted && e instanceof SQLException) {
+            return new QueryInterruptedException(e);
+        }
+        return (e instanceof RuntimeException) ? (RuntimeException) e : new RuntimeException(e);
+    }
+
+
+    private static int progress() {
+        Deadline deadline = current.get();
+        if (deadline == null) {
+            return 0;
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            interrupted.set(true);
+            return 1;
+        }
+        if (deadline.millis > 0 && System.nanoTime() - deadline.expiresAt > 0) {
+            expired.set(deadline);
+            return 1;
+        }
+        return 0;
+    }
+
+
+    @Override
+    public void close() {
+        if (previous != null) {
+            current.set(previous);
+        } else {
+            current.remove();
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.github.artbits.jsqlite;
+
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Expire {
+    long value();
+    TimeUnit unit() default TimeUnit.SECONDS;
+    String column() default "createdAt";
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class ExpiryPurger {
+
+    private final static Logger logger = Logger.getLogger("com.github.artbits.jsqlite");
+
+    private final Core core;
+    private final Config config;
+    private final Map<Class<?>, Expire> expiries = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> future;
+
+
+    ExpiryPurger(Core core, Config config) {
+        this.core = core;
+        this.config = config;
+    }
+
+
+    synchronized void register(Class<?> tClass, Expire expire, ScheduledExecutorService scheduler) {
+        expiries.put(tClass, expire);
+        if (future == null) {
+            future = scheduler.scheduleWithFixedDelay(this::purge, config.purgeInterval, config.purgeInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    void unregister(Class<?> tClass) {
+        expiries.remove(tClass);
+    }
+
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void purge() {
+        long budget = Math.max(1, config.purgeRate * config.purgeInterval / 1000);
+        for (Map.Entry<Class<?>, Expire> entry : expiries.entrySet()) {
+            Expire expire = entry.getValue();
+            long deadline = System.currentTimeMillis() - expire.unit().toMillis(expire.value());
+            try {
+                budget -= core.chunkedDelete((Class) entry.getKey(), config.purgeChunkSize, budget,
+                        expire.column() + " < ?", deadline);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Expiry purge failed for " + entry.getKey().getSimpleName(), e);
+            }
+            if (budget <= 0) {
+                return;
+            }
+        }
+    }
+
+
+    synchronized void close() {
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+}
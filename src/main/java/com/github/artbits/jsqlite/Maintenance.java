@@ -0,0 +1,159 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class Maintenance {
+
+    private final static Logger logger = Logger.getLogger("com.github.artbits.jsqlite");
+
+    private final Connection[] connections;
+    private final ReentrantLock[] locks;
+    private final int step;
+
+
+    Maintenance(Connection[] connections, ReentrantLock[] locks, int step) {
+        this.connections = connections;
+        this.locks = locks;
+        this.step = Math.max(1, step);
+    }
+
+
+    public long pageCount() {
+        return sum("page_count");
+    }
+
+
+    public long freelistCount() {
+        return sum("freelist_count");
+    }
+
+
+    public long pageSize() {
+        try {
+            return Backup.pragma(connections[0], "page_size");
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    public double fragmentation() {
+        long pageCount = pageCount();
+        return (pageCount > 0) ? (double) freelistCount() / pageCount : 0;
+    }
+
+
+    public boolean incremental() {
+        try {
+            for (Connection connection : connections) {
+                if (Backup.pragma(connection, "auto_vacuum") != 2) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    public long incrementalVacuum(long maxMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxMillis);
+        long freed = 0;
+        try {
+            for (int i = 0; i < connections.length; i++) {
+                while (System.nanoTime() - deadline < 0) {
+                    long released = vacuumStep(connections[i], locks[i]);
+                    if (released <= 0) {
+                        break;
+                    }
+                    freed += released;
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return freed;
+    }
+
+
+    private long vacuumStep(Connection connection, ReentrantLock lock) throws SQLException {
+        lock.lock();
+        try (Statement statement = connection.createStatement()) {
+            long before = Backup.pragma(connection, "freelist_count");
+            if (before == 0) {
+                return 0;
+            }
+            if (statement.execute("pragma incremental_vacuum(" + step + ");")) {
+                try (ResultSet resultSet = statement.getResultSet()) {
+                    while (resultSet.next()) {
+                        continue;
+                    }
+                }
+            }
+            return before - Backup.pragma(connection, "freelist_count");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    ScheduledFuture<?> schedule(ScheduledExecutorService scheduler, Config config, LongSupplier lastWrite) {
+        return scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (System.currentTimeMillis() - lastWrite.getAsLong() >= config.vacuumIdle && freelistCount() > 0) {
+                    incrementalVacuum(config.vacuumBudget);
+                }
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Incremental vacuum failed", e);
+            }
+        }, config.vacuumInterval, config.vacuumInterval, TimeUnit.MILLISECONDS);
+    }
+
+
+    private long sum(String pragma) {
+        try {
+            long sum = 0;
+            for (Connection connection : connections) {
+                sum += Backup.pragma(connection, pragma);
+            }
+            return sum;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("%d pages of %d bytes, %d free (%.1f%%)", pageCount(), pageSize(), freelistCount(), fragmentation() * 100);
+    }
+
+}
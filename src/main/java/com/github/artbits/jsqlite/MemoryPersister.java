@@ -0,0 +1,112 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import org.sqlite.SQLiteConnection;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class MemoryPersister {
+
+    private final static Logger logger = Logger.getLogger("com.github.artbits.jsqlite");
+
+    private final Connection connection;
+    private final ReentrantLock lock;
+    private final String path;
+    private final long interval;
+    private final long changes;
+    private long persistedChanges;
+    private long persistedSchema;
+    private long persistedAt = System.currentTimeMillis();
+    private ScheduledFuture<?> future;
+
+
+    MemoryPersister(Connection connection, ReentrantLock lock, String path, Config config) {
+        this.connection = connection;
+        this.lock = lock;
+        this.path = path;
+        this.interval = config.persistInterval;
+        this.changes = config.persistChanges;
+    }
+
+
+    void load() throws SQLException {
+        if (Files.exists(Paths.get(path))) {
+            int rc = ((SQLiteConnection) connection).getDatabase().restore("main", path, null);
+            if (rc != 0) {
+                throw new SQLException("Restore failed with result code " + rc, null, rc);
+            }
+        }
+        persistedChanges = Backup.totalChanges(connection);
+        persistedSchema = Backup.pragma(connection, "schema_version");
+    }
+
+
+    void start(ScheduledExecutorService scheduler) {
+        long tick = Math.max(1, Math.min(interval, 1000));
+        future = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                long dirty = Backup.totalChanges(connection) - persistedChanges;
+                boolean schemaChanged = Backup.pragma(connection, "schema_version") != persistedSchema;
+                if (schemaChanged || (dirty > 0 && (dirty >= changes || System.currentTimeMillis() - persistedAt >= interval))) {
+                    persist();
+                }
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Persisting in-memory database failed", e);
+            }
+        }, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+
+    void persist() throws SQLException {
+        lock.lock();
+        try {
+            long total = Backup.totalChanges(connection);
+            long schema = Backup.pragma(connection, "schema_version");
+            int rc = ((SQLiteConnection) connection).getDatabase().backup("main", path, null);
+            if (rc != 0) {
+                throw new SQLException("Persist failed with result code " + rc, null, rc);
+            }
+            persistedChanges = total;
+            persistedSchema = schema;
+            persistedAt = System.currentTimeMillis();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    void close() throws SQLException {
+        if (future != null) {
+            future.cancel(false);
+        }
+        if (Backup.totalChanges(connection) != persistedChanges || Backup.pragma(connection, "schema_version") != persistedSchema) {
+            persist();
+        }
+    }
+
+}
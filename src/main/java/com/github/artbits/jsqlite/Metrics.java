@@ -0,0 +1,137 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class Metrics {
+
+    final AtomicLong walSize = new AtomicLong();
+    final AtomicLong checkpoints = new AtomicLong();
+    final AtomicLong checkpointMillis = new AtomicLong();
+    final AtomicLong lastCheckpointMillis = new AtomicLong();
+    final AtomicLong maxCheckpointMillis = new AtomicLong();
+    final AtomicLong busyCheckpoints = new AtomicLong();
+    final AtomicLong analyzes = new AtomicLong();
+    final AtomicLong optimizes = new AtomicLong();
+    final AtomicLong busyErrors = new AtomicLong();
+    final AtomicLong busyRetries = new AtomicLong();
+    final AtomicLong busyFailures = new AtomicLong();
+    final AtomicLong busyWaitMillis = new AtomicLong();
+
+
+    Metrics() { }
+
+
+    public long walSize() {
+        return walSize.get();
+    }
+
+
+    public long checkpoints() {
+        return checkpoints.get();
+    }
+
+
+    public long checkpointMillis() {
+        return checkpointMillis.get();
+    }
+
+
+    public long lastCheckpointMillis() {
+        return lastCheckpointMillis.get();
+    }
+
+
+    public long maxCheckpointMillis() {
+        return maxCheckpointMillis.get();
+    }
+
+
+    public long busyCheckpoints() {
+        return busyCheckpoints.get();
+    }
+
+
+    public long analyzes() {
+        return analyzes.get();
+    }
+
+
+    public long optimizes() {
+        return optimizes.get();
+    }
+
+
+    public long busyErrors() {
+        return busyErrors.get();
+    }
+
+
+    public long busyRetries() {
+        return busyRetries.get();
+    }
+
+
+    public long busyFailures() {
+        return busyFailures.get();
+    }
+
+
+    public long busyWaitMillis() {
+        return busyWaitMillis.get();
+    }
+
+
+    void recordCheckpoint(long millis, boolean busy) {
+        checkpoints.incrementAndGet();
+        checkpointMillis.addAndGet(millis);
+        lastCheckpointMillis.set(millis);
+        maxCheckpointMillis.accumulateAndGet(millis, Math::max);
+        if (busy) {
+            busyCheckpoints.incrementAndGet();
+        }
+    }
+
+
+    Metrics add(Metrics metrics) {
+        walSize.addAndGet(metrics.walSize());
+        checkpoints.addAndGet(metrics.checkpoints());
+        checkpointMillis.addAndGet(metrics.checkpointMillis());
+        lastCheckpointMillis.accumulateAndGet(metrics.lastCheckpointMillis(), Math::max);
+        maxCheckpointMillis.accumulateAndGet(metrics.maxCheckpointMillis(), Math::max);
+        busyCheckpoints.addAndGet(metrics.busyCheckpoints());
+        analyzes.addAndGet(metrics.analyzes());
+        optimizes.addAndGet(metrics.optimizes());
+        busyErrors.addAndGet(metrics.busyErrors());
+        busyRetries.addAndGet(metrics.busyRetries());
+        busyFailures.addAndGet(metrics.busyFailures());
+        busyWaitMillis.addAndGet(metrics.busyWaitMillis());
+        return this;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("wal %d bytes, %d checkpoints (%d busy) in %d ms, last %d ms, max %d ms, %d analyzes, %d optimizes, " +
+                        "%d busy errors, %d retries, %d failures, %d ms backoff",
+                walSize(), checkpoints(), busyCheckpoints(), checkpointMillis(), lastCheckpointMillis(), maxCheckpointMillis(),
+                analyzes(), optimizes(), busyErrors(), busyRetries(), busyFailures(), busyWaitMillis());
+    }
+
+}
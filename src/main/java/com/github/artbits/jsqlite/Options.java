@@ -17,6 +17,7 @@
 package com.github.artbits.jsqlite;
 
 import java.util.Arrays;
+import java.util.List;
 
 public final class Options {
 
@@ -26,6 +27,14 @@ public final class Options {
     String orderColumns;
     Long limitSize;
     Long offsetSize;
+    String snippetColumn;
+    String snippetOpen;
+    String snippetClose;
+    int snippetTokens;
+    long timeoutMillis;
+    Long rangeFrom;
+    Long rangeTo;
+    List<String> includeFields;
 
 
     public final static String ASC = "asc";
@@ -98,4 +107,37 @@ public final class Options {
         return this;
     }
 
+
+    public Options snippet(String column, String open, String close, int tokens) {
+        snippetColumn = column;
+        snippetOpen = open;
+        snippetClose = close;
+        snippetTokens = tokens;
+        return this;
+    }
+
+
+    public Options timeout(long millis) {
+        timeoutMillis = millis;
+        return this;
+    }
+
+
+    public Options range(long fromMillis, long toMillis) {
+        rangeFrom = fromMillis;
+        rangeTo = toMillis;
+        return this;
+    }
+
+
+    public static String json(String column, String path) {
+        return SQLTemplate.jsonPath(column, path);
+    }
+
+
+    public Options include(String... fields) {
+        includeFields = Arrays.asList(fields);
+        return this;
+    }
+
 }
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+final class Partitioning {
+
+    private final static long DAY_MILLIS = 86_400_000L;
+
+    private final Partition.Period period;
+    private final String tableName;
+    private final Pattern pattern;
+    private final NavigableSet<Long> indexes = new ConcurrentSkipListSet<>();
+
+
+    Partitioning(Class<?> tClass, Partition partition) {
+        this.period = partition.value();
+        this.tableName = tClass.getSimpleName().toLowerCase();
+        this.pattern = Pattern.compile(Pattern.quote(tableName) + "_p(\\d{" + (period == Partition.Period.DAY ? 8 : 6) + "})");
+    }
+
+
+    long index(long millis) {
+        if (period == Partition.Period.DAY) {
+            return Math.floorDiv(millis, DAY_MILLIS);
+        }
+        LocalDate date = Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC).toLocalDate();
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+
+
+    long start(long index) {
+        if (period == Partition.Period.DAY) {
+            return index * DAY_MILLIS;
+        }
+        return LocalDate.of((int) (index / 12), (int) (index % 12) + 1, 1).toEpochDay() * DAY_MILLIS;
+    }
+
+
+    String table(long index) {
+        if (period == Partition.Period.DAY) {
+            LocalDate date = LocalDate.ofEpochDay(index);
+            return String.format("%s_p%04d%02d%02d", tableName, date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+        }
+        return String.format("%s_p%04d%02d", tableName, index / 12, index % 12 + 1);
+    }
+
+
+    Long parse(String table) {
+        Matcher matcher = pattern.matcher(table);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String suffix = matcher.group(1);
+        int year = Integer.parseInt(suffix.substring(0, 4));
+        int month = Integer.parseInt(suffix.substring(4, 6));
+        if (period == Partition.Period.DAY) {
+            return LocalDate.of(year, month, Integer.parseInt(suffix.substring(6, 8))).toEpochDay();
+        }
+        return year * 12L + month - 1;
+    }
+
+
+    long firstId(long index) {
+        return index << 32;
+    }
+
+
+    NavigableSet<Long> indexes() {
+        return indexes;
+    }
+
+
+    List<String> tables(Long from, Long to) {
+        long low = (from != null) ? index(from) : Long.MIN_VALUE;
+        long high = (to != null) ? index(to - 1) : Long.MAX_VALUE;
+        List<String> tables = new ArrayList<>();
+        if (low > high) {
+            return tables;
+        }
+        NavigableSet<Long> selected = indexes.subSet(low, true, high, true);
+        for (Long index : selected) {
+            tables.add(table(index));
+        }
+        return tables;
+    }
+
+}
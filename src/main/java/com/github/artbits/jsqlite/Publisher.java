@@ -0,0 +1,34 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+public interface Publisher<T> {
+    void subscribe(Subscriber<? super T> subscriber);
+
+    interface Subscriber<T> {
+        void onSubscribe(Subscription subscription);
+        void onNext(T item);
+        void onError(Throwable throwable);
+        void onComplete();
+    }
+
+    interface Subscription {
+        void request(long n);
+        void cancel();
+    }
+}
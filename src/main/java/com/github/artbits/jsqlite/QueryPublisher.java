@@ -0,0 +1,165 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+final class QueryPublisher<T> implements Publisher<T> {
+
+    private final Executor executor;
+    private final Callable<Cursor<T>> opener;
+
+
+    QueryPublisher(Executor executor, Callable<Cursor<T>> opener) {
+        this.executor = executor;
+        this.opener = opener;
+    }
+
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        QuerySubscription subscription = new QuerySubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+
+    static <T> Cursor<T> iterate(Iterator<T> iterator) {
+        return new Cursor<T>() {
+            @Override
+            public T next() {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+
+            @Override
+            public void cancel() { }
+
+            @Override
+            public void close() { }
+        };
+    }
+
+
+    interface Cursor<T> {
+        T next() throws Exception;
+        void cancel();
+        void close();
+    }
+
+
+    private final class QuerySubscription implements Subscription {
+
+        private final Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Cursor<T> cursor;
+        private volatile Throwable error;
+
+
+        QuerySubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested " + n + " items, must be positive");
+            } else {
+                demand.getAndAccumulate(n, (a, b) -> (a + b < 0) ? Long.MAX_VALUE : a + b);
+            }
+            schedule();
+        }
+
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            Cursor<T> c = cursor;
+            if (c != null) {
+                c.cancel();
+            }
+            schedule();
+        }
+
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+
+        private void drain() {
+            int missed = 1;
+            do {
+                try {
+                    if (error != null) {
+                        close();
+                        subscriber.onError(error);
+                        return;
+                    }
+                    if (cancelled) {
+                        close();
+                        return;
+                    }
+                    if (cursor == null) {
+                        cursor = opener.call();
+                    }
+                    while (demand.get() > 0 && !cancelled) {
+                        T t = cursor.next();
+                        if (t == null) {
+                            close();
+                            subscriber.onComplete();
+                            return;
+                        }
+                        subscriber.onNext(t);
+                        if (demand.get() != Long.MAX_VALUE) {
+                            demand.decrementAndGet();
+                        }
+                    }
+                    if (cancelled) {
+                        close();
+                        return;
+                    }
+                } catch (Throwable e) {
+                    close();
+                    if (!cancelled) {
+                        subscriber.onError(e);
+                    }
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+
+        private void close() {
+            Cursor<T> c = cursor;
+            if (c != null) {
+                c.close();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+public final class QueryTimeoutException extends RuntimeException {
+
+    private final long timeoutMillis;
+
+
+    QueryTimeoutException(long timeoutMillis, Throwable cause) {
+        super("Query exceeded its timeout of " + timeoutMillis + " ms", cause);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+
+    public long timeoutMillis() {
+        return timeoutMillis;
+    }
+
+}
@@ -17,6 +17,7 @@
 package com.github.artbits.jsqlite;
 
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.sql.ResultSet;
 import java.util.*;
 import java.util.function.BiConsumer;
@@ -27,6 +28,7 @@ import static com.github.artbits.jsqlite.Core.gson;
 final class Reflect<T> {
 
     private final Map<String, Field> fieldMap = new LinkedHashMap<>();
+    private final Map<String, Field> relationMap = new LinkedHashMap<>();
     private Class<?> tClass;
     private T t;
 
@@ -47,7 +49,9 @@ final class Reflect<T> {
         while (clazz != null){
             for (Field field : clazz.getDeclaredFields()) {
                 field.setAccessible(true);
-                if (!isIgnore(field)) {
+                if (isRelation(field)) {
+                    relationMap.put(field.getName(), field);
+                } else if (!isIgnore(field)) {
                     fieldMap.put(field.getName(), field);
                 }
             }
@@ -78,6 +82,16 @@ final class Reflect<T> {
     }
 
 
+    Field getField(String fieldName) {
+        return fieldMap.getOrDefault(fieldName, null);
+    }
+
+
+    Field getRelation(String fieldName) {
+        return relationMap.getOrDefault(fieldName, null);
+    }
+
+
     Class<?> getType(String fieldName) {
         Field field = fieldMap.getOrDefault(fieldName, null);
         return field.getType();
@@ -97,6 +111,9 @@ final class Reflect<T> {
             case "character":
             case "string": return "text";
             case "boolean" : return "blob";
+            case "byte[]":
+            case "bytebuffer":
+            case "inputstream": return "blob";
             default: throw new NullPointerException();
         }
     }
@@ -108,14 +125,25 @@ final class Reflect<T> {
             Field dbField = fieldMap.getOrDefault(fieldName, null);
             Object dbValue = (dbField != null) ? dbField.get(t) : null;
             if (dbField != null && dbValue != null) {
+                if (isCompress(field)) {
+                    return Compression.encode(isJson(field) ? gson.toJson(dbValue) : (String) dbValue);
+                }
                 if (isJson(field)) {
-                    return String.format("'%s'", gson.toJson(dbValue));
+                    return gson.toJson(dbValue);
+                }
+                if (dbValue instanceof Boolean) {
+                    return (Objects.equals(dbValue, true)) ? 1 : 0;
+                }
+                if (dbValue instanceof Character) {
+                    return String.valueOf(dbValue);
                 }
-                switch (getDatabaseType(fieldName)) {
-                    case "text": return String.format("'%s'", dbValue);
-                    case "blob": return (Objects.equals(dbValue, true)) ? 1 : 0;
-                    default: return dbValue;
+                if (dbValue instanceof ByteBuffer) {
+                    ByteBuffer buffer = ((ByteBuffer) dbValue).duplicate();
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    return bytes;
                 }
+                return dbValue;
             }
             return null;
         } catch (IllegalAccessException e) {
@@ -133,6 +161,10 @@ final class Reflect<T> {
 
     void getDBColumnsWithType(BiConsumer<String, String> consumer) {
         for (Field field : fieldMap.values()) {
+            if (isCompress(field)) {
+                consumer.accept(field.getName(), "blob");
+                continue;
+            }
             if (isJson(field)) {
                 consumer.accept(field.getName(), "text");
                 continue;
@@ -154,63 +186,142 @@ final class Reflect<T> {
     }
 
 
+    void getJsonIndexList(BiConsumer<String, String> consumer) {
+        fieldMap.values().forEach(field -> {
+            Column column = getColumn(field);
+            if (column != null && column.json() && !isCompress(field)) {
+                for (String path : column.jsonIndex()) {
+                    consumer.accept(field.getName(), path);
+                }
+            }
+        });
+    }
+
+
+    List<String> getFullTextColumns() {
+        List<String> columns = new ArrayList<>();
+        fieldMap.values().forEach(field -> {
+            if (isFullText(field)) {
+                if (isCompress(field)) {
+                    throw new IllegalArgumentException(field.getName() + " cannot be both full text and compressed");
+                }
+                columns.add(field.getName());
+            }
+        });
+        return columns;
+    }
+
+
+    List<String> getCompressedColumns() {
+        List<String> columns = new ArrayList<>();
+        for (Field field : fieldMap.values()) {
+            if (isCompress(field)) {
+                columns.add(field.getName());
+            }
+        }
+        return columns;
+    }
+
+
+    String getShardKey() {
+        for (Field field : fieldMap.values()) {
+            if (isShardKey(field)) {
+                return field.getName();
+            }
+        }
+        return null;
+    }
+
+
     T get() {
         return t;
     }
 
 
     static <T> T toEntity(Class<T> tClass, Options options, ResultSet resultSet) {
+        Reflect<T> reflect = new Reflect<>(tClass);
+        return reflect.fill(reflect.newEntity(), getSelectColumns(options), resultSet);
+    }
+
+
+    static Set<String> getSelectColumns(Options options) {
+        Set<String> columns = new HashSet<>();
+        if (options != null && options.selectColumns != null && !Objects.equals(options.selectColumns, "*")) {
+            columns.addAll(Arrays.asList(options.selectColumns.split(", ")));
+        }
+        return columns;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    T newEntity() {
         try {
-            Map<String, Boolean> columnsMap = new HashMap<>();
-            if (options != null && options.selectColumns != null && !Objects.equals(options.selectColumns, "*")) {
-                String[] columns = options.selectColumns.split(", ");
-                for (String column : columns) {
-                    columnsMap.put(column, true);
-                }
-            }
-            T t = tClass.getConstructor(Consumer.class).newInstance((Consumer<T>) (c -> {}));
-            Reflect<T> reflect = new Reflect<>(t);
-            for (Field field : reflect.fieldMap.values()) {
+            return (T) tClass.getConstructor(Consumer.class).newInstance((Consumer<T>) (c -> {}));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    T fill(T target, Set<String> columns, ResultSet resultSet) {
+        try {
+            t = target;
+            for (Field field : fieldMap.values()) {
                 String name = field.getName();
-                if (!columnsMap.isEmpty() && !columnsMap.getOrDefault(name, false)) {
+                if (!columns.isEmpty() && !columns.contains(name)) {
+                    continue;
+                }
+                if (isCompress(field)) {
+                    String text = Compression.decode(resultSet.getObject(name));
+                    setValue(name, isJson(field) ? gson.fromJson(text, field.getType()) : text);
                     continue;
                 }
                 if (isJson(field)) {
-                    reflect.setValue(name, gson.fromJson(resultSet.getString(name), field.getType()));
+                    setValue(name, gson.fromJson(resultSet.getString(name), field.getType()));
                     continue;
                 }
                 String type = field.getType().getSimpleName().toLowerCase();
                 switch (type) {
                     case "int":
                     case "integer":
-                        reflect.setValue(name, resultSet.getInt(name));
+                        setValue(name, resultSet.getInt(name));
                         break;
                     case "byte":
-                        reflect.setValue(name, resultSet.getByte(name));
+                        setValue(name, resultSet.getByte(name));
                         break;
                     case "short":
-                        reflect.setValue(name, resultSet.getShort(name));
+                        setValue(name, resultSet.getShort(name));
                         break;
                     case "long":
-                        reflect.setValue(name, resultSet.getLong(name));
+                        setValue(name, resultSet.getLong(name));
                         break;
                     case "float":
-                        reflect.setValue(name, resultSet.getFloat(name));
+                        setValue(name, resultSet.getFloat(name));
                         break;
                     case "double":
-                        reflect.setValue(name, resultSet.getDouble(name));
+                        setValue(name, resultSet.getDouble(name));
                         break;
                     case "char":
                     case "character":
                     case "string":
-                        reflect.setValue(name, resultSet.getString(name));
+                        setValue(name, resultSet.getString(name));
                         break;
                     case "boolean" :
-                        reflect.setValue(name, resultSet.getBoolean(name));
+                        setValue(name, resultSet.getBoolean(name));
+                        break;
+                    case "byte[]":
+                        setValue(name, resultSet.getBytes(name));
+                        break;
+                    case "bytebuffer":
+                        byte[] bytes = resultSet.getBytes(name);
+                        setValue(name, (bytes != null) ? ByteBuffer.wrap(bytes) : null);
+                        break;
+                    case "inputstream":
+                        setValue(name, BlobInputStream.open(tClass, name, resultSet));
                         break;
                 }
             }
-            return reflect.get();
+            return target;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -226,6 +337,15 @@ final class Reflect<T> {
     }
 
 
+    static boolean isRelation(Field field) {
+        if (field.isAnnotationPresent(Column.class)) {
+            Column column = field.getAnnotation(Column.class);
+            return !column.relation().isEmpty();
+        }
+        return false;
+    }
+
+
     static boolean isIndex(Field field) {
         if (field.isAnnotationPresent(Column.class)) {
             Column column = field.getAnnotation(Column.class);
@@ -244,6 +364,33 @@ final class Reflect<T> {
     }
 
 
+    static boolean isCompress(Field field) {
+        if (field.isAnnotationPresent(Column.class)) {
+            Column column = field.getAnnotation(Column.class);
+            return column.compress() && (column.json() || field.getType() == String.class);
+        }
+        return false;
+    }
+
+
+    static boolean isFullText(Field field) {
+        if (field.isAnnotationPresent(Column.class)) {
+            Column column = field.getAnnotation(Column.class);
+            return column.fullText();
+        }
+        return false;
+    }
+
+
+    static boolean isShardKey(Field field) {
+        if (field.isAnnotationPresent(Column.class)) {
+            Column column = field.getAnnotation(Column.class);
+            return column.shardKey();
+        }
+        return false;
+    }
+
+
     static Column getColumn(Field field) {
         if (field.isAnnotationPresent(Column.class)) {
             return field.getAnnotation(Column.class);
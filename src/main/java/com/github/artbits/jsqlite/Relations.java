@@ -0,0 +1,70 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+final class Relations {
+
+    final static int BATCH_SIZE = 500;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <T> void load(DB db, Class<T> tClass, List<T> list, Options options) {
+        if (options == null || options.includeFields == null || list.isEmpty()) {
+            return;
+        }
+        Reflect<T> reflect = new Reflect<>(tClass);
+        try {
+            for (String name : options.includeFields) {
+                Field relation = reflect.getRelation(name);
+                if (relation == null) {
+                    throw new IllegalArgumentException(tClass.getSimpleName() + " has no relation " + name);
+                }
+                Field key = reflect.getField(relation.getAnnotation(Column.class).relation());
+                if (key == null) {
+                    throw new IllegalArgumentException(tClass.getSimpleName() + " has no column " + relation.getAnnotation(Column.class).relation());
+                }
+                Set<Long> ids = new LinkedHashSet<>();
+                for (T t : list) {
+                    Optional.ofNullable((Number) key.get(t)).ifPresent(id -> ids.add(id.longValue()));
+                }
+                Map<Long, Object> relatedMap = new HashMap<>();
+                if (!ids.isEmpty()) {
+                    for (Object related : db.find((Class) relation.getType(), new ArrayList<>(ids))) {
+                        relatedMap.put(((DataSupport<?>) related).id(), related);
+                    }
+                }
+                for (T t : list) {
+                    Number id = (Number) key.get(t);
+                    relation.set(t, (id != null) ? relatedMap.get(id.longValue()) : null);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    static void reject(Options options, String method) {
+        if (options != null && options.includeFields != null) {
+            throw new IllegalArgumentException("Options.include is not supported by " + method);
+        }
+    }
+
+}
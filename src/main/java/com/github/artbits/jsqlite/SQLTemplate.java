@@ -16,12 +16,23 @@
 
 package com.github.artbits.jsqlite;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 final class SQLTemplate {
 
     static <T> String create(Class<T> tClass) {
+        return create(tClass.getSimpleName().toLowerCase(), tClass);
+    }
+
+
+    static <T> String create(String tableName, Class<T> tClass) {
         StringBuffer columnsString = new StringBuffer("id integer primary key,");
         new Reflect<>(tClass).getDBColumnsWithType((column, type) -> {
             if (!Objects.equals(column, "id")) {
@@ -29,8 +40,7 @@ final class SQLTemplate {
             }
         });
         columnsString.deleteCharAt(columnsString.length() - 1);
-        String tableName = tClass.getSimpleName().toLowerCase();
-        return $("create table %s (%s);", tableName, columnsString);
+        return $("create table if not exists %s (%s);", tableName, columnsString);
     }
 
 
@@ -40,33 +50,50 @@ final class SQLTemplate {
 
 
     static <T> String drop(Class<T> tClass) {
-        return $("drop table %s;", tClass.getSimpleName().toLowerCase());
+        return $("drop table if exists %s;", tClass.getSimpleName().toLowerCase());
     }
 
 
-    static <T> String insert(T t) {
+    static <T> String insert(T t, boolean withId, List<Object> values) {
+        return insert(t.getClass().getSimpleName().toLowerCase(), t, withId, values);
+    }
+
+
+    static <T> String insert(String tableName, T t, boolean withId, List<Object> values) {
         StringBuffer columnsString = new StringBuffer();
         StringBuffer valueString = new StringBuffer();
         new Reflect<>(t).getDBColumnsWithValue((column, value) -> {
-            if (!Objects.equals(column, "id")) {
+            if (withId || !Objects.equals(column, "id")) {
                 columnsString.append(column).append(",");
-                valueString.append(value).append(",");
+                valueString.append("?,");
+                values.add(value);
             }
         });
         columnsString.deleteCharAt(columnsString.length() - 1);
         valueString.deleteCharAt(valueString.length() - 1);
-        String tableName = t.getClass().getSimpleName().toLowerCase();
         return $("insert into %s (%s) values (%s);", tableName, columnsString, valueString);
     }
 
 
-    static <T> String update(T t, Options options) {
-        String tableName = t.getClass().getSimpleName().toLowerCase();
+    static <T> String insertPrepared(Class<T> tClass, String[] columns) {
+        String tableName = tClass.getSimpleName().toLowerCase();
+        String valueString = String.join(",", Collections.nCopies(columns.length, "?"));
+        return $("insert into %s (%s) values (%s);", tableName, String.join(",", columns), valueString);
+    }
+
+
+    static <T> String update(T t, Options options, List<Object> values) {
+        return update(t.getClass().getSimpleName().toLowerCase(), t, options, values);
+    }
+
+
+    static <T> String update(String tableName, T t, Options options, List<Object> values) {
         String whereString = (options.wherePredicate != null) ? $("where %s ", options.wherePredicate) : "";
         StringBuffer setString = new StringBuffer();
         new Reflect<>(t).getDBColumnsWithValue((column, value) -> {
             if (value != null && !Objects.equals(column, "id")) {
-                setString.append(column).append(" = ").append(value).append(",");
+                setString.append(column).append(" = ?,");
+                values.add(value);
             }
         });
         setString.deleteCharAt(setString.length() - 1);
@@ -81,7 +108,12 @@ final class SQLTemplate {
 
 
     static <T> String delete(Class<T> tClass, Options options) {
-        String deleteString = $("delete from %s ", tClass.getSimpleName().toLowerCase());
+        return delete(tClass.getSimpleName().toLowerCase(), options);
+    }
+
+
+    static String delete(String tableName, Options options) {
+        String deleteString = $("delete from %s ", tableName);
         String whereString = (options.wherePredicate != null) ? $("where %s ", options.wherePredicate) : "";
         StringBuilder SQLBuilder = new StringBuilder();
         return SQLBuilder
@@ -99,7 +131,12 @@ final class SQLTemplate {
         }
         String fromString = $("from %s ", table);
         String selectString = $("select %s ", Optional.ofNullable(options.selectColumns).orElse("*"));
-        String whereString = (options.wherePredicate != null) ? $("where %s ", options.wherePredicate) : "";
+        String wherePredicate = options.wherePredicate;
+        if (options.rangeFrom != null) {
+            String range = $("createdAt >= %d and createdAt < %d", options.rangeFrom, options.rangeTo);
+            wherePredicate = (wherePredicate != null) ? $("(%s) and %s", wherePredicate, range) : range;
+        }
+        String whereString = (wherePredicate != null) ? $("where %s ", wherePredicate) : "";
         String groupString = (options.groupColumns != null) ? $("group by %s ", options.groupColumns) : "";
         String orderString = (options.orderColumns != null) ? $("order by %s ", options.orderColumns) : "";
         String limitString = (options.limitSize != null) ? $("limit %d ", options.limitSize) : "";
@@ -124,10 +161,171 @@ final class SQLTemplate {
     }
 
 
-    static <T> String createIndex(Class<T> tClass, String column) {
+    static <T> String search(Class<T> tClass, String query, Options options, int snippetIndex) {
         String table = tClass.getSimpleName().toLowerCase();
+        String fts = table + "_fts";
+        String snippetString = (snippetIndex >= 0) ? $(", snippet(%s, %d, %s, %s, '...', %d) as fts_snippet",
+                fts, snippetIndex, quote(options.snippetOpen), quote(options.snippetClose), options.snippetTokens) : "";
+        String matchString = $("(select rowid as fts_rowid, rank as fts_rank%s from %s where %s match %s)",
+                snippetString, fts, fts, quote(query));
+        return query($("%s join %s on %s.id = fts_rowid", table, matchString, table), options);
+    }
+
+
+    static <T> String createFullText(Class<T> tClass, List<String> columns) {
+        String table = tClass.getSimpleName().toLowerCase();
+        return $("create virtual table %s_fts using fts5(%s, content='%s', content_rowid='id');",
+                table, String.join(", ", columns), table);
+    }
+
+
+    static <T> List<String> createFullTextTriggers(Class<T> tClass, List<String> columns) {
+        String table = tClass.getSimpleName().toLowerCase();
+        String fts = table + "_fts";
+        String columnsString = String.join(", ", columns);
+        String newString = "new." + String.join(", new.", columns);
+        String oldString = "old." + String.join(", old.", columns);
+        String insertString = $("insert into %s(rowid, %s) values (new.id, %s);", fts, columnsString, newString);
+        String deleteString = $("insert into %s(%s, rowid, %s) values ('delete', old.id, %s);", fts, fts, columnsString, oldString);
+        return Arrays.asList(
+                $("create trigger %s_ai after insert on %s begin %s end;", fts, table, insertString),
+                $("create trigger %s_ad after delete on %s begin %s end;", fts, table, deleteString),
+                $("create trigger %s_au after update of %s on %s begin %s %s end;", fts, columnsString, table, deleteString, insertString));
+    }
+
+
+    static <T> String rebuildFullText(Class<T> tClass) {
+        String fts = tClass.getSimpleName().toLowerCase() + "_fts";
+        return $("insert into %s(%s) values ('rebuild');", fts, fts);
+    }
+
+
+    static <T> List<String> dropFullTextTriggers(Class<T> tClass) {
+        String fts = tClass.getSimpleName().toLowerCase() + "_fts";
+        return Arrays.asList(
+                $("drop trigger if exists %s_ai;", fts),
+                $("drop trigger if exists %s_ad;", fts),
+                $("drop trigger if exists %s_au;", fts));
+    }
+
+
+    static <T> List<String> dropFullText(Class<T> tClass) {
+        List<String> list = new ArrayList<>(dropFullTextTriggers(tClass));
+        list.add($("drop table if exists %s_fts;", tClass.getSimpleName().toLowerCase()));
+        return list;
+    }
+
+
+    static <T> String summaryTable(Class<T> tClass) {
+        return tClass.getSimpleName().toLowerCase() + "_summary";
+    }
+
+
+    static String summaryKey(Aggregate aggregate) {
+        return aggregate.groupBy().isEmpty() ? "grp" : "grp_" + aggregate.groupBy();
+    }
+
+
+    static Set<String> summaryColumns(Aggregate aggregate) {
+        Set<String> columns = new HashSet<>(Arrays.asList(summaryKey(aggregate), "row_count"));
+        for (String column : aggregate.sum()) {
+            columns.add("sum_" + column);
+        }
+        return columns;
+    }
+
+
+    static <T> List<String> createSummary(Class<T> tClass, Aggregate aggregate) {
+        String table = tClass.getSimpleName().toLowerCase();
+        String summary = summaryTable(tClass);
+        String key = summaryKey(aggregate);
+        String group = aggregate.groupBy();
+        StringBuilder columnsString = new StringBuilder(key).append(", row_count");
+        StringBuilder definitionString = new StringBuilder(key).append(" unique, row_count integer not null");
+        StringBuilder populateString = new StringBuilder(group.isEmpty() ? "null" : group).append(", count(*)");
+        for (String column : aggregate.sum()) {
+            columnsString.append(", sum_").append(column);
+            definitionString.append(", sum_").append(column).append(" not null default 0");
+            populateString.append(", ifnull(sum(").append(column).append("), 0)");
+        }
+        List<String> list = new ArrayList<>();
+        list.add($("create table %s (%s);", summary, definitionString));
+        list.add($("insert into %s (%s) select %s from %s%s;", summary, columnsString, populateString, table,
+                group.isEmpty() ? "" : " group by " + group));
+        String addString = summaryAdd(summary, key, columnsString.toString(), group, aggregate.sum());
+        String subtractString = summarySubtract(summary, key, group, aggregate.sum());
+        list.add($("create trigger %s_ai after insert on %s begin %s end;", summary, table, addString));
+        list.add($("create trigger %s_ad after delete on %s begin %s end;", summary, table, subtractString));
+        List<String> updateColumns = new ArrayList<>(Arrays.asList(aggregate.sum()));
+        if (!group.isEmpty()) {
+            updateColumns.add(group);
+        }
+        if (!updateColumns.isEmpty()) {
+            list.add($("create trigger %s_au after update of %s on %s begin %s %s end;",
+                    summary, String.join(", ", updateColumns), table, subtractString, addString));
+        }
+        return list;
+    }
+
+
+    private static String summaryAdd(String summary, String key, String columns, String group, String[] sums) {
+        String keyString = group.isEmpty() ? "null" : "new." + group;
+        StringBuilder setString = new StringBuilder("row_count = row_count + 1");
+        StringBuilder valueString = new StringBuilder(keyString).append(", 1");
+        for (String column : sums) {
+            setString.append($(", sum_%s = sum_%s + ifnull(new.%s, 0)", column, column, column));
+            valueString.append($(", ifnull(new.%s, 0)", column));
+        }
+        return $("update %s set %s where %s is %s; ", summary, setString, key, keyString) +
+                $("insert into %s (%s) select %s where not exists (select 1 from %s where %s is %s);",
+                        summary, columns, valueString, summary, key, keyString);
+    }
+
+
+    private static String summarySubtract(String summary, String key, String group, String[] sums) {
+        String keyString = group.isEmpty() ? "null" : "old." + group;
+        StringBuilder setString = new StringBuilder("row_count = row_count - 1");
+        for (String column : sums) {
+            setString.append($(", sum_%s = sum_%s - ifnull(old.%s, 0)", column, column, column));
+        }
+        return $("update %s set %s where %s is %s;", summary, setString, key, keyString);
+    }
+
+
+    static <T> List<String> dropSummary(Class<T> tClass) {
+        String summary = summaryTable(tClass);
+        return Arrays.asList(
+                $("drop trigger if exists %s_ai;", summary),
+                $("drop trigger if exists %s_ad;", summary),
+                $("drop trigger if exists %s_au;", summary),
+                $("drop table if exists %s;", summary));
+    }
+
+
+    static <T> String createIndex(Class<T> tClass, String column) {
+        return createIndex(tClass.getSimpleName().toLowerCase(), column);
+    }
+
+
+    static String createIndex(String table, String column) {
         String index = $("idx_%s_%s", table, column);
-        return $("create index %s on %s(%s)", index, table, column);
+        return $("create index if not exists %s on %s(%s)", index, table, column);
+    }
+
+
+    static String jsonPath(String column, String path) {
+        return $("json_extract(%s, %s)", column, quote(path));
+    }
+
+
+    static String jsonIndexName(String table, String column, String path) {
+        String slug = path.replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", "").toLowerCase();
+        return $("idx_%s_%s_%s_%08x", table, column, slug, path.hashCode());
+    }
+
+
+    static String createJsonIndex(String table, String column, String path) {
+        return $("create index if not exists %s on %s(%s)", jsonIndexName(table, column, path), table, jsonPath(column, path));
     }
 
 
@@ -136,6 +334,11 @@ final class SQLTemplate {
     }
 
 
+    private static String quote(String s) {
+        return $("'%s'", s.replace("'", "''"));
+    }
+
+
     private static String $(String format, Object... objects) {
         return String.format(format, objects);
     }
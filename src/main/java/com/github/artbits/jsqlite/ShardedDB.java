@@ -0,0 +1,896 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.artbits.jsqlite;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.*;
+
+final class ShardedDB implements DB {
+
+    private final Core[] shards;
+
+    private final ExecutorService executor;
+
+    private final Map<Class<?>, AtomicLong[]> sequences = new ConcurrentHashMap<>();
+    private final ThreadLocal<Integer> pinned = new ThreadLocal<>();
+
+    private final AtomicLong roundRobin = new AtomicLong();
+
+    private final Config config;
+
+
+    ShardedDB(List<String> paths, Config config) {
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard path is required");
+        }
+        this.config = config;
+        shards = new Core[paths.size()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Core(paths.get(i), config);
+        }
+        executor = Executors.newFixedThreadPool(shards.length, r -> {
+            Thread thread = new Thread(r, "jsqlite-shard");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        for (Core shard : shards) {
+            shard.close();
+        }
+    }
+
+
+    @Override
+    public void tables(Class<?>... classes) {
+        scatter(shard -> {
+            shard.tables(classes);
+            return null;
+        });
+    }
+
+
+    @Override
+    public void drop(Class<?>... classes) {
+        scatter(shard -> {
+            shard.drop(classes);
+            return null;
+        });
+        for (Class<?> tClass : classes) {
+            sequences.remove(tClass);
+        }
+    }
+
+
+    @Override
+    public String version() {
+        return shards[0].version();
+    }
+
+
+    @Override
+    public Metrics metrics() {
+        Metrics metrics = new Metrics();
+        for (Core shard : shards) {
+            metrics.add(shard.metrics());
+        }
+        return metrics;
+    }
+
+
+    @Override
+    public void transaction(Runnable body) {
+        if (pinned.get() == null && shards.length > 1) {
+            throw new IllegalStateException("A sharded transaction needs a shard key, use transaction(shardKey, body)");
+        }
+        transaction((pinned.get() != null) ? pinned.get() : 0, body);
+    }
+
+
+    @Override
+    public void transaction(Object shardKey, Runnable body) {
+        transaction(shardOfKey(shardKey), body);
+    }
+
+
+    private void transaction(int shard, Runnable body) {
+        if (pinned.get() != null) {
+            checkPinned(shard);
+            body.run();
+            return;
+        }
+        pinned.set(shard);
+        try {
+            shards[shard].transaction(body);
+        } finally {
+            pinned.remove();
+        }
+    }
+
+
+    @Override
+    public Maintenance maintenance() {
+        Connection[] connections = new Connection[shards.length];
+        ReentrantLock[] locks = new ReentrantLock[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            connections[i] = shards[i].connection();
+            locks[i] = shards[i].lock();
+        }
+        return new Maintenance(connections, locks, config.vacuumStep);
+    }
+
+
+    @Override
+    public BackupProgress backupTo(Path path, Consumer<BackupOptions> consumer) {
+        String fileName = path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        long pageCount = 0;
+        long elapsedMillis = 0;
+        for (int i = 0; i < shards.length; i++) {
+            String shardName = (dot > 0) ? fileName.substring(0, dot) + "-" + i + fileName.substring(dot) : fileName + "-" + i;
+            BackupProgress progress = shards[i].backupTo(path.resolveSibling(shardName), consumer);
+            pageCount += progress.pageCount();
+            elapsedMillis += progress.elapsedMillis();
+        }
+        try {
+            long pageSize = Backup.pragma(shards[0].connection(), "page_size");
+            return new BackupProgress(pageCount, 0, pageSize, elapsedMillis);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    @Override
+    public BackupProgress backupTo(Path path) {
+        return backupTo(path, null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void insert(T t) {
+        int shard = shardOfEntity(t);
+        checkPinned(shard);
+        t.id = nextId(t.getClass(), shard);
+        shards[shard].insert(t, true);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void update(T t, String predicate, Object... args) {
+        writeScatter(shard -> {
+            shard.update(t, predicate, args);
+            return null;
+        }, false);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void update(T t) {
+        checkPinned(shardOf(t.id()));
+        shards[shardOf(t.id())].update(t);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void delete(Class<T> tClass, String predicate, Object... args) {
+        writeScatter(shard -> {
+            shard.delete(tClass, predicate, args);
+            return null;
+        }, true);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void delete(Class<T> tClass, List<Long> ids) {
+        Map<Integer, List<Long>> groups = ids.stream().collect(Collectors.groupingBy(this::shardOf));
+        groups.keySet().forEach(this::checkPinned);
+        gather(groups.keySet(), shard -> {
+            shards[shard].delete(tClass, groups.get(shard));
+            return null;
+        });
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void delete(Class<T> tClass, Long... ids) {
+        delete(tClass, Arrays.asList(ids));
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void deleteAll(Class<T> tClass) {
+        writeScatter(shard -> {
+            shard.deleteAll(tClass);
+            return null;
+        }, true);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long chunkedDelete(Class<T> tClass, int chunkSize, String predicate, Object... args) {
+        return writeScatter(shard -> shard.chunkedDelete(tClass, chunkSize, predicate, args), true).stream().mapToLong(Long::longValue).sum();
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> int dropPartitions(Class<T> tClass, long beforeMillis) {
+        return writeScatter(shard -> shard.dropPartitions(tClass, beforeMillis), true).stream().mapToInt(Integer::intValue).sum();
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> List<T> find(Class<T> tClass, Consumer<Options> consumer) {
+        Options options = new Options();
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
+        List<List<T>> lists = scatter(shard -> shard.find(tClass, pushDown(consumer, options)));
+        List<T> list = merge(tClass, lists, options, false);
+        Relations.load(this, tClass, list, options);
+        return list;
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void forEach(Class<T> tClass, Consumer<Options> options, boolean reuse, Consumer<T> consumer) {
+        Options o = new Options();
+        Optional.ofNullable(options).ifPresent(c -> c.accept(o));
+        if (isOrderedOrLimited(options) || o.includeFields != null) {
+            find(tClass, options).forEach(consumer);
+            return;
+        }
+        for (Core shard : shards) {
+            shard.forEach(tClass, options, reuse, consumer);
+        }
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void forEach(Class<T> tClass, Consumer<Options> options, Consumer<T> consumer) {
+        forEach(tClass, options, false, consumer);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> Publisher<T> publish(Class<T> tClass, Consumer<Options> consumer) {
+        Options options = new Options();
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
+        Relations.reject(options, "publish");
+        if (isOrderedOrLimited(consumer)) {
+            return new QueryPublisher<>(shards[0].queryExecutor(), () -> QueryPublisher.iterate(find(tClass, consumer).iterator()));
+        }
+        return new QueryPublisher<>(shards[0].queryExecutor(), () -> new QueryPublisher.Cursor<T>() {
+            private int shard = -1;
+            private QueryPublisher.Cursor<T> cursor;
+
+            @Override
+            public T next() throws Exception {
+                while (true) {
+                    T t = (cursor != null) ? cursor.next() : null;
+                    if (t != null || shard == shards.length - 1) {
+                        return t;
+                    }
+                    close();
+                    cursor = shards[++shard].cursor(tClass, (consumer != null) ? options : null);
+                }
+            }
+
+            @Override
+            public void cancel() {
+                Optional.ofNullable(cursor).ifPresent(QueryPublisher.Cursor::cancel);
+            }
+
+            @Override
+            public void close() {
+                Optional.ofNullable(cursor).ifPresent(QueryPublisher.Cursor::close);
+            }
+        });
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> List<T> find(Class<T> tClass, List<Long> ids) {
+        Map<Integer, List<Long>> groups = ids.stream().collect(Collectors.groupingBy(this::shardOf));
+        List<List<T>> lists = gather(groups.keySet(), shard -> shards[shard].find(tClass, groups.get(shard)));
+        List<T> list = lists.stream().flatMap(List::stream).collect(Collectors.toList());
+        list.sort(Comparator.comparingLong(DataSupport::id));
+        return list;
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> List<T> find(Class<T> tClass, Long... ids) {
+        return find(tClass, Arrays.asList(ids));
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> List<T> findAll(Class<T> tClass) {
+        return scatter(shard -> shard.findAll(tClass)).stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> T findOne(Class<T> tClass, String predicate, Object... args) {
+        return first(tClass, predicate, args);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> T findOne(Class<T> tClass, Long id) {
+        return shards[shardOf(id)].findOne(tClass, id);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> T first(Class<T> tClass, String predicate, Object... args) {
+        return scatter(shard -> shard.first(tClass, predicate, args)).stream()
+                .filter(Objects::nonNull)
+                .min(Comparator.comparingLong(DataSupport::id))
+                .orElse(null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> T first(Class<T> tClass) {
+        return first(tClass, null, (Object) null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> T last(Class<T> tClass, String predicate, Object... args) {
+        return scatter(shard -> shard.last(tClass, predicate, args)).stream()
+                .filter(Objects::nonNull)
+                .max(Comparator.comparingLong(DataSupport::id))
+                .orElse(null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> T last(Class<T> tClass) {
+        return last(tClass, null, (Object) null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> List<T> search(Class<T> tClass, String query, Consumer<Options> consumer) {
+        Options options = new Options();
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
+        List<List<T>> lists = scatter(shard -> shard.search(tClass, query, pushDown(consumer, options)));
+        return merge(tClass, lists, options, true);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> List<T> search(Class<T> tClass, String query) {
+        return search(tClass, query, null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long exportTo(Class<T> tClass, OutputStream outputStream, Format format) {
+        long rows = 0;
+        for (int i = 0; i < shards.length; i++) {
+            rows += shards[i].exportTo(tClass, outputStream, format, i == 0);
+        }
+        return rows;
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long importFrom(Class<T> tClass, InputStream inputStream, Format format, Consumer<BulkOptions> consumer) {
+        if (pinned.get() != null) {
+            throw new IllegalStateException("importFrom cannot run inside a shard transaction");
+        }
+        BulkOptions options = new BulkOptions();
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
+        Connection[] connections = new Connection[shards.length];
+        ReentrantLock[] locks = new ReentrantLock[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            connections[i] = shards[i].connection();
+            locks[i] = shards[i].lock();
+        }
+        String shardKey = new Reflect<>(tClass).getShardKey();
+        return Bulk.load(connections, locks, (columns, values) -> {
+            int idIndex = Arrays.asList(columns).indexOf("id");
+            if (values[idIndex] != null) {
+                return shardOf(((Number) values[idIndex]).longValue());
+            }
+            int keyIndex = (shardKey != null) ? Arrays.asList(columns).indexOf(shardKey) : -1;
+            int shard = (keyIndex >= 0) ? shardOfKey(values[keyIndex]) : nextShard();
+            values[idIndex] = nextId(tClass, shard);
+            return shard;
+        }, tClass, inputStream, format, options);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long importFrom(Class<T> tClass, InputStream inputStream, Format format) {
+        return importFrom(tClass, inputStream, format, null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void subscribe(Class<T> tClass, Consumer<List<Change>> listener) {
+        for (Core shard : shards) {
+            shard.subscribe(tClass, listener);
+        }
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void unsubscribe(Class<T> tClass, Consumer<List<Change>> listener) {
+        for (Core shard : shards) {
+            shard.unsubscribe(tClass, listener);
+        }
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long[] longColumn(Class<T> tClass, String column, Consumer<Options> consumer) {
+        Options options = new Options();
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
+        if (options.orderColumns != null && !isOrderedBy(options, column)) {
+            return find(tClass, sortKeyOptions(column, consumer)).stream().mapToLong(t -> toNumber(new Reflect<>(t).getValue(column)).longValue()).toArray();
+        }
+        List<long[]> arrays = scatter(shard -> shard.longColumn(tClass, column, pushDown(consumer, options)));
+        LongStream stream = arrays.stream().flatMapToLong(Arrays::stream);
+        if (isOrderedBy(options, column)) {
+            stream = stream.sorted();
+            if (isDescending(options)) {
+                long[] sorted = stream.toArray();
+                stream = IntStream.range(0, sorted.length).mapToLong(i -> sorted[sorted.length - 1 - i]);
+            }
+        }
+        stream = stream.skip(Optional.ofNullable(options.offsetSize).orElse(0L));
+        return ((options.limitSize != null) ? stream.limit(options.limitSize) : stream).toArray();
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> void columns(Class<T> tClass, Consumer<Options> options, int batchSize, Consumer<Columns> consumer, String... columns) {
+        Options o = Core.columnsOptions(options, columns);
+        Columns batch = Columns.allocate(new Reflect<>(tClass), batchSize, columns);
+        if (isOrderedOrLimited(options)) {
+            for (T t : find(tClass, options)) {
+                if (batch.full()) {
+                    consumer.accept(batch);
+                    batch.clear();
+                }
+                batch.append(new Reflect<>(t));
+            }
+        } else {
+            for (Core shard : shards) {
+                shard.columns(tClass, o, batch, consumer);
+            }
+        }
+        if (batch.size() > 0) {
+            consumer.accept(batch);
+        }
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> Columns columns(Class<T> tClass, Consumer<Options> options, Path file, String... columns) {
+        Options o = Core.columnsOptions(options, columns);
+        boolean[] began = new boolean[shards.length];
+        int locked = 0;
+        try {
+            for (; locked < shards.length; locked++) {
+                began[locked] = shards[locked].beginSnapshot();
+            }
+            if (isOrderedOrLimited(options)) {
+                List<T> list = find(tClass, options);
+                Columns export = Columns.map(new Reflect<>(tClass), file, list.size(), columns);
+                list.forEach(t -> export.append(new Reflect<>(t)));
+                export.force();
+                return export;
+            }
+            long rows = 0;
+            for (Core shard : shards) {
+                rows += shard.rows(tClass, o);
+            }
+            Columns export = Columns.map(new Reflect<>(tClass), file, rows, columns);
+            for (Core shard : shards) {
+                shard.columns(tClass, o, export, null);
+            }
+            export.force();
+            return export;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                shards[i].endSnapshot(began[i]);
+            }
+        }
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long[] longColumn(Class<T> tClass, String column) {
+        return longColumn(tClass, column, null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> double[] doubleColumn(Class<T> tClass, String column, Consumer<Options> consumer) {
+        Options options = new Options();
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
+        if (options.orderColumns != null && !isOrderedBy(options, column)) {
+            return find(tClass, sortKeyOptions(column, consumer)).stream().mapToDouble(t -> toNumber(new Reflect<>(t).getValue(column)).doubleValue()).toArray();
+        }
+        List<double[]> arrays = scatter(shard -> shard.doubleColumn(tClass, column, pushDown(consumer, options)));
+        DoubleStream stream = arrays.stream().flatMapToDouble(Arrays::stream);
+        if (isOrderedBy(options, column)) {
+            stream = stream.sorted();
+            if (isDescending(options)) {
+                double[] sorted = stream.toArray();
+                stream = IntStream.range(0, sorted.length).mapToDouble(i -> sorted[sorted.length - 1 - i]);
+            }
+        }
+        stream = stream.skip(Optional.ofNullable(options.offsetSize).orElse(0L));
+        return ((options.limitSize != null) ? stream.limit(options.limitSize) : stream).toArray();
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> double[] doubleColumn(Class<T> tClass, String column) {
+        return doubleColumn(tClass, column, null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> InputStream openBlob(Class<T> tClass, String column, long id) {
+        return shards[shardOf(id)].openBlob(tClass, column, id);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long count(Class<T> tClass, String predicate, Object... args) {
+        return scatter(shard -> shard.count(tClass, predicate, args)).stream().mapToLong(Long::longValue).sum();
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long count(Class<T> tClass, Consumer<Options> consumer) {
+        return scatter(shard -> shard.count(tClass, consumer)).stream().mapToLong(Long::longValue).sum();
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> long count(Class<T> tClass) {
+        return count(tClass, null, (Object) null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> boolean exists(Class<T> tClass, String predicate, Object... args) {
+        return scatter(shard -> shard.exists(tClass, predicate, args)).stream().anyMatch(Boolean::booleanValue);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> double average(Class<T> tClass, String column, String predicate, Object... args) {
+        return average(tClass, column, options -> options.where(predicate, args));
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> double average(Class<T> tClass, String column, Consumer<Options> consumer) {
+        Consumer<Options> notNull = options -> {
+            Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
+            String predicate = column + " is not null";
+            options.wherePredicate = (options.wherePredicate != null) ? String.format("(%s) and %s", options.wherePredicate, predicate) : predicate;
+        };
+        List<double[]> parts = scatter(shard -> new double[]{
+                shard.average(tClass, column, consumer), shard.count(tClass, notNull)});
+        double sum = 0;
+        double count = 0;
+        for (double[] part : parts) {
+            sum += part[0] * part[1];
+            count += part[1];
+        }
+        return (count > 0) ? sum / count : 0;
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> double average(Class<T> tClass, String column) {
+        return average(tClass, column, null, (Object) null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> Number sum(Class<T> tClass, String column, String predicate, Object... args) {
+        return total(scatter(shard -> shard.sum(tClass, column, predicate, args)));
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> Number sum(Class<T> tClass, String column, Consumer<Options> consumer) {
+        return total(scatter(shard -> shard.sum(tClass, column, consumer)));
+    }
+
+
+    private static Number total(List<Number> numbers) {
+        boolean integral = numbers.stream().filter(Objects::nonNull).allMatch(n -> n instanceof Long || n instanceof Integer);
+        if (integral) {
+            return numbers.stream().filter(Objects::nonNull).mapToLong(Number::longValue).sum();
+        }
+        return numbers.stream().filter(Objects::nonNull).mapToDouble(Number::doubleValue).sum();
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> Number sum(Class<T> tClass, String column) {
+        return sum(tClass, column, null, (Object) null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> Number max(Class<T> tClass, String column, String predicate, Object... args) {
+        return max(tClass, column, options -> options.where(predicate, args));
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> Number max(Class<T> tClass, String column, Consumer<Options> consumer) {
+        return scatter(shard -> shard.max(tClass, column, consumer)).stream()
+                .filter(Objects::nonNull)
+                .max(Comparator.comparingDouble(Number::doubleValue))
+                .orElse(null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> Number max(Class<T> tClass, String column) {
+        return max(tClass, column, null, (Object) null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> Number min(Class<T> tClass, String column, String predicate, Object... args) {
+        return min(tClass, column, options -> options.where(predicate, args));
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> Number min(Class<T> tClass, String column, Consumer<Options> consumer) {
+        return scatter(shard -> shard.min(tClass, column, consumer)).stream()
+                .filter(Objects::nonNull)
+                .min(Comparator.comparingDouble(Number::doubleValue))
+                .orElse(null);
+    }
+
+
+    @Override
+    public <T extends DataSupport<T>> Number min(Class<T> tClass, String column) {
+        return min(tClass, column, null, (Object) null);
+    }
+
+
+    private <T> int shardOfEntity(T t) {
+        Reflect<T> reflect = new Reflect<>(t);
+        String shardKey = reflect.getShardKey();
+        if (shardKey != null) {
+            return shardOfKey(reflect.getValue(shardKey));
+        }
+        return (pinned.get() != null) ? pinned.get() : nextShard();
+    }
+
+
+    private void checkPinned(int shard) {
+        Integer current = pinned.get();
+        if (current != null && current != shard) {
+            throw new IllegalStateException("A transaction on shard " + current + " cannot write to shard " + shard);
+        }
+    }
+
+
+    private int shardOf(long id) {
+        return (int) Math.floorMod(id, (long) shards.length);
+    }
+
+
+    private int shardOfKey(Object key) {
+        return Math.floorMod(Objects.hashCode(key), shards.length);
+    }
+
+
+    private int nextShard() {
+        return (int) Math.floorMod(roundRobin.getAndIncrement(), (long) shards.length);
+    }
+
+
+    private long nextId(Class<?> tClass, int shard) {
+        AtomicLong[] sequence = sequences.computeIfAbsent(tClass, c -> {
+            AtomicLong[] array = new AtomicLong[shards.length];
+            for (int i = 0; i < shards.length; i++) {
+                array[i] = new AtomicLong(shards[i].maxId(c) / shards.length);
+            }
+            return array;
+        });
+        return sequence[shard].incrementAndGet() * shards.length + shard;
+    }
+
+
+    private Consumer<Options> pushDown(Consumer<Options> consumer, Options options) {
+        return o -> {
+            Optional.ofNullable(consumer).ifPresent(c -> c.accept(o));
+            if (options.limitSize != null) {
+                o.limitSize = options.limitSize + Optional.ofNullable(options.offsetSize).orElse(0L);
+            }
+            o.offsetSize = null;
+            o.includeFields = null;
+        };
+    }
+
+
+    private static boolean isOrderedOrLimited(Consumer<Options> consumer) {
+        Options options = new Options();
+        Optional.ofNullable(consumer).ifPresent(c -> c.accept(options));
+        return options.orderColumns != null || options.limitSize != null || options.offsetSize != null;
+    }
+
+
+    private static boolean isOrderedBy(Options options, String column) {
+        return options.orderColumns != null && Objects.equals(options.orderColumns.split(",")[0].trim().split("\\s+")[0], column);
+    }
+
+
+    private static boolean isDescending(Options options) {
+        return options.orderColumns.split(",")[0].toLowerCase().trim().endsWith(Options.DESC);
+    }
+
+
+    private static Consumer<Options> sortKeyOptions(String column, Consumer<Options> consumer) {
+        return o -> {
+            consumer.accept(o);
+            String notNull = column + " is not null";
+            o.wherePredicate = (o.wherePredicate != null) ? String.format("(%s) and %s", o.wherePredicate, notNull) : notNull;
+            o.selectColumns = null;
+            o.includeFields = null;
+        };
+    }
+
+
+    private static Number toNumber(Object value) {
+        if (value instanceof Boolean) {
+            return ((Boolean) value) ? 1 : 0;
+        }
+        return (value instanceof Number) ? (Number) value : 0;
+    }
+
+
+    private <T> List<T> merge(Class<T> tClass, List<List<T>> lists, Options options, boolean interleave) {
+        List<T> list = new ArrayList<>();
+        if (options.orderColumns != null && !(interleave && Objects.equals(options.orderColumns, "fts_rank"))) {
+            lists.forEach(list::addAll);
+            list.sort(comparator(tClass, options));
+        } else if (interleave) {
+            int size = lists.stream().mapToInt(List::size).max().orElse(0);
+            for (int i = 0; i < size; i++) {
+                for (List<T> l : lists) {
+                    if (i < l.size()) {
+                        list.add(l.get(i));
+                    }
+                }
+            }
+        } else {
+            lists.forEach(list::addAll);
+        }
+        int from = (int) Math.min(list.size(), Optional.ofNullable(options.offsetSize).orElse(0L));
+        int to = (options.limitSize != null) ? (int) Math.min(list.size(), from + options.limitSize) : list.size();
+        return new ArrayList<>(list.subList(from, to));
+    }
+
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Comparator<T> comparator(Class<T> tClass, Options options) {
+        Reflect<T> reflect = new Reflect<>(tClass);
+        Set<String> selectColumns = Reflect.getSelectColumns(options);
+        Comparator<T> comparator = null;
+        for (String order : options.orderColumns.split(",")) {
+            String[] parts = order.trim().split("\\s+");
+            String column = parts[0];
+            boolean direction = parts.length == 1 || (parts.length == 2
+                    && (Objects.equals(parts[1].toLowerCase(), Options.ASC) || Objects.equals(parts[1].toLowerCase(), Options.DESC)));
+            if (!direction || reflect.getField(column) == null || (!selectColumns.isEmpty() && !selectColumns.contains(column))) {
+                throw new IllegalArgumentException("Sharded order terms must be selected entity fields: " + order.trim());
+            }
+            boolean desc = parts.length > 1 && Objects.equals(parts[1].toLowerCase(), Options.DESC);
+            Comparator<T> c = (a, b) -> {
+                Comparable x = (Comparable) new Reflect<>(a).getValue(column);
+                Comparable y = (Comparable) new Reflect<>(b).getValue(column);
+                if (x == null || y == null) {
+                    return (x == y) ? 0 : (x == null) ? -1 : 1;
+                }
+                return x.compareTo(y);
+            };
+            c = desc ? c.reversed() : c;
+            comparator = (comparator == null) ? c : comparator.thenComparing(c);
+        }
+        return comparator;
+    }
+
+
+    private <R> List<R> writeScatter(Function<Core, R> function, boolean parallel) {
+        Integer shard = pinned.get();
+        if (shard != null) {
+            if (shards.length > 1) {
+                throw new IllegalStateException("A transaction on shard " + shard + " cannot run predicate writes across all shards");
+            }
+            return Collections.singletonList(function.apply(shards[shard]));
+        }
+        if (parallel) {
+            return scatter(function);
+        }
+        List<R> results = new ArrayList<>();
+        for (Core core : shards) {
+            results.add(function.apply(core));
+        }
+        return results;
+    }
+
+
+    private <R> List<R> scatter(Function<Core, R> function) {
+        List<Integer> all = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            all.add(i);
+        }
+        return gather(all, shard -> function.apply(shards[shard]));
+    }
+
+
+    private <R> List<R> gather(Collection<Integer> targets, Function<Integer, R> function) {
+        if (targets.size() == 1) {
+            return Collections.singletonList(function.apply(targets.iterator().next()));
+        }
+        List<Future<R>> futures = new ArrayList<>();
+        for (Integer target : targets) {
+            futures.add(executor.submit(() -> function.apply(target)));
+        }
+        List<R> results = new ArrayList<>();
+        try {
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+}
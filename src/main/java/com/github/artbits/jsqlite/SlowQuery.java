@@ -0,0 +1,79 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.artbits.jsqlite;
+
+import java.util.List;
+
+public final class SlowQuery {
+
+    private final String sql;
+    private final long millis;
+    private final long rows;
+    private final List<String> plan;
+    private final boolean fullScan;
+    private final long suppressed;
+
+
+    SlowQuery(String sql, long millis, long rows, List<String> plan, boolean fullScan, long suppressed) {
+        this.sql = sql;
+        this.millis = millis;
+        this.rows = rows;
+        this.plan = plan;
+        this.fullScan = fullScan;
+        this.suppressed = suppressed;
+    }
+
+
+    public String sql() {
+        return sql;
+    }
+
+
+    public long millis() {
+        return millis;
+    }
+
+
+    public long rows() {
+        return rows;
+    }
+
+
+    public List<String> plan() {
+        return plan;
+    }
+
+
+    public boolean fullScan() {
+        return fullScan;
+    }
+
+
+    public long suppressed() {
+        return suppressed;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("slow query (%d ms, %d rows%s%s): %s %s", millis, rows,
+                fullScan ? ", SCAN without index" : "",
+                suppressed > 0 ? ", " + suppressed + " suppressed" : "",
+                sql, plan);
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2023 Zhang Guanhu
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.artbits.jsqlite;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+final class SlowQueryLog {
+
+    private final static Logger logger = Logger.getLogger("com.github.artbits.jsqlite");
+
+    private final Map<String, Shape> shapes = new ConcurrentHashMap<>();
+    private final Connection connection;
+    private final long threshold;
+    private final long interval;
+    private final Consumer<SlowQuery> listener;
+
+
+    SlowQueryLog(Connection connection, Config config) {
+        this.connection = connection;
+        this.threshold = config.slowQueryThreshold;
+        this.interval = config.slowQueryInterval;
+        this.listener = (config.slowQueryListener != null) ? config.slowQueryListener : q -> logger.warning(q.toString());
+    }
+
+
+    void record(String sql, long startNanos, long rows) {
+        if (threshold < 0) {
+            return;
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (millis < threshold) {
+            return;
+        }
+        String shape = shape(sql);
+        Shape state = shapes.computeIfAbsent(shape, s -> new Shape());
+        long now = System.currentTimeMillis();
+        long last = state.lastLogged.get();
+        if (now - last < interval || !state.lastLogged.compareAndSet(last, now)) {
+            state.suppressed.incrementAndGet();
+            return;
+        }
+        List<String> plan = explain(sql);
+        boolean fullScan = plan.stream().anyMatch(s -> s.startsWith("SCAN ") && !s.contains(" USING "));
+        listener.accept(new SlowQuery(shape, millis, rows, plan, fullScan, state.suppressed.getAndSet(0)));
+    }
+
+
+    private List<String> explain(String sql) {
+        List<String> plan = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("explain query plan " + sql)) {
+            while (resultSet.next()) {
+                plan.add(resultSet.getString("detail"));
+            }
+        } catch (SQLException e) {
+            plan.add("explain failed: " + e.getMessage());
+        }
+        return plan;
+    }
+
+
+    static String shape(String sql) {
+        return sql.replaceAll("'(?:[^']|'')*'", "?")
+                .replaceAll("\\b\\d+(\\.\\d+)?\\b", "?")
+                .replaceAll("\\?(\\s*,\\s*\\?)+", "?");
+    }
+
+
+    private static final class Shape {
+        final AtomicLong lastLogged = new AtomicLong(Long.MIN_VALUE / 2);
+        final AtomicLong suppressed = new AtomicLong();
+    }
+
+}
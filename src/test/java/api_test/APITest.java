@@ -1,13 +1,33 @@
 package api_test;
 
+import com.github.artbits.jsqlite.Aggregate;
+import com.github.artbits.jsqlite.BackupProgress;
+import com.github.artbits.jsqlite.Change;
 import com.github.artbits.jsqlite.Column;
+import com.github.artbits.jsqlite.Columns;
 import com.github.artbits.jsqlite.DB;
 import com.github.artbits.jsqlite.DataSupport;
+import com.github.artbits.jsqlite.Expire;
+import com.github.artbits.jsqlite.Format;
+import com.github.artbits.jsqlite.Maintenance;
 import com.github.artbits.jsqlite.Options;
+import com.github.artbits.jsqlite.Partition;
+import com.github.artbits.jsqlite.Publisher;
+import com.github.artbits.jsqlite.QueryTimeoutException;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.LongBuffer;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 public final class APITest {
@@ -39,6 +59,104 @@ public final class APITest {
     }
 
 
+    public static class Article extends DataSupport<Article> {
+        @Column(fullText = true)
+        public String title;
+        @Column(fullText = true)
+        public String content;
+
+        public Article(Consumer<Article> consumer) {
+            super(consumer);
+        }
+    }
+
+
+    public static class Attachment extends DataSupport<Attachment> {
+        public String name;
+        public byte[] thumbnail;
+        public InputStream content;
+
+        public Attachment(Consumer<Attachment> consumer) {
+            super(consumer);
+        }
+    }
+
+
+
+    @Expire(value = 1, unit = TimeUnit.SECONDS)
+    public static class Event extends DataSupport<Event> {
+        public String name;
+
+        public Event(Consumer<Event> consumer) {
+            super(consumer);
+        }
+    }
+
+
+
+    @Aggregate(sum = {"amount"}, groupBy = "region")
+    public static class Sale extends DataSupport<Sale> {
+        public String region;
+        public Long amount;
+
+        public Sale(Consumer<Sale> consumer) {
+            super(consumer);
+        }
+    }
+
+
+
+    @Partition(Partition.Period.DAY)
+    public static class Log extends DataSupport<Log> {
+        @Column(index = true)
+        public String level;
+        public String message;
+
+        public Log(Consumer<Log> consumer) {
+            super(consumer);
+        }
+    }
+
+
+
+    public static class Purchase extends DataSupport<Purchase> {
+        public Long userId;
+        public String item;
+        @Column(relation = "userId")
+        public User user;
+
+        public Purchase(Consumer<Purchase> consumer) {
+            super(consumer);
+        }
+    }
+
+
+
+    public static class Document extends DataSupport<Document> {
+        public String title;
+        @Column(compress = true)
+        public String body;
+        @Column(json = true, compress = true)
+        public List<String> tags;
+
+        public Document(Consumer<Document> consumer) {
+            super(consumer);
+        }
+    }
+
+
+
+    public static class Profile extends DataSupport<Profile> {
+        public String name;
+        @Column(json = true, jsonIndex = {"$.city"})
+        public Map<String, String> address;
+
+        public Profile(Consumer<Profile> consumer) {
+            super(consumer);
+        }
+    }
+
+
 
     DB connect() {
         DB db = DB.connect("database/example.db");
@@ -51,6 +169,11 @@ public final class APITest {
 
     @Test
     void insert() {
+        insert(connect());
+    }
+
+
+    void insert(DB db) {
         List<User> users = Arrays.asList(new User(u -> {
             u.name = "user1";
             u.age = 18;
@@ -72,8 +195,6 @@ public final class APITest {
             u.age = 26;
             u.vip = true;
         }));
-
-        DB db = connect();
         users.forEach(db::insert);
     }
 
@@ -228,6 +349,16 @@ public final class APITest {
     }
 
 
+    @Test
+    void exists() {
+        DB db = connect();
+        insert();
+
+        System.out.println(db.exists(User.class, "vip = ?", true));
+        System.out.println(db.exists(User.class, "name = ?", "nobody"));
+    }
+
+
     @Test
     void average() {
         DB db = connect();
@@ -288,4 +419,429 @@ public final class APITest {
     }
 
 
-}
\ No newline at end of file
+    @Test
+    void slowQuery() {
+        DB db = DB.connect("database/example.db", config -> config
+                .slowQueryThreshold(0)
+                .slowQueryListener(System.out::println));
+        db.tables(User.class);
+        insert();
+        db.find(User.class, options -> options.where("age > ?", 20));
+        db.count(User.class, "name = ?", "user1");
+    }
+
+
+    @Test
+    void search() {
+        DB db = connect();
+        db.tables(User.class, Article.class);
+        db.insert(new Article(a -> {
+            a.title = "SQLite full text search";
+            a.content = "FTS5 is an SQLite virtual table module that provides full-text search functionality.";
+        }));
+        db.insert(new Article(a -> {
+            a.title = "Java ORM";
+            a.content = "An ORM for SQLite databases written in Java.";
+        }));
+
+        List<Article> articles1 = db.search(Article.class, "sqlite");
+        articles1.forEach(DataSupport::printJson);
+
+        List<Article> articles2 = db.search(Article.class, "search", options -> options
+                .snippet("content", "[", "]", 8)
+                .limit(10));
+        articles2.forEach(DataSupport::printJson);
+    }
+
+
+    @Test
+    void exportAndImport() {
+        DB db = connect();
+        insert();
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        long rows1 = db.exportTo(User.class, json, Format.NDJSON);
+        System.out.println(rows1);
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        long rows2 = db.exportTo(User.class, csv, Format.CSV);
+        System.out.println(rows2);
+
+        db.deleteAll(User.class);
+        long rows3 = db.importFrom(User.class, new ByteArrayInputStream(json.toByteArray()), Format.NDJSON);
+        System.out.println(rows3);
+
+        db.deleteAll(User.class);
+        long rows4 = db.importFrom(User.class, new ByteArrayInputStream(csv.toByteArray()), Format.CSV, options -> options
+                .chunkSize(2)
+                .deferIndexes(true));
+        System.out.println(rows4);
+        db.findAll(User.class).forEach(DataSupport::printJson);
+    }
+
+
+    @Test
+    void backup() {
+        DB db = connect();
+        insert();
+
+        BackupProgress progress1 = db.backupTo(Paths.get("database/backup/example.db"), options -> options
+                .pagesPerStep(16)
+                .sleepMillis(5)
+                .progress(System.out::println));
+        System.out.println(progress1);
+
+        BackupProgress progress2 = db.backupTo(Paths.get("database/backup/example-compact.db"), options -> options
+                .compact(true));
+        System.out.println(progress2);
+    }
+
+
+    @Test
+    void shards() {
+        DB db = DB.connect(Arrays.asList("database/shard-0.db", "database/shard-1.db", "database/shard-2.db"));
+        db.tables(User.class);
+        insert(db);
+
+        List<User> users = db.find(User.class, options -> options
+                .where("age >= ?", 20)
+                .order("age", Options.DESC)
+                .limit(3));
+        users.forEach(DataSupport::printJson);
+
+        User user = db.findOne(User.class, users.get(0).id());
+        user.printJson();
+
+        System.out.println(db.count(User.class));
+        System.out.println(db.sum(User.class, "age"));
+        System.out.println(db.average(User.class, "age", "vip = ?", true));
+        db.close();
+    }
+
+
+    @Test
+    void subscribe() throws InterruptedException {
+        DB db = connect();
+        Consumer<List<Change>> listener = changes -> changes.forEach(System.out::println);
+        db.subscribe(User.class, listener);
+
+        insert(db);
+        db.update(new User(u -> u.age = 30), "name = ?", "user2");
+        db.delete(User.class, "name = ?", "user3");
+        db.deleteAll(User.class);
+
+        Thread.sleep(100);
+        db.unsubscribe(User.class, listener);
+    }
+
+
+    @Test
+    void publish() throws InterruptedException {
+        DB db = connect();
+        insert();
+        CountDownLatch latch = new CountDownLatch(1);
+        Publisher<User> publisher = db.publish(User.class, options -> options.where("vip = ?", true));
+        publisher.subscribe(new Publisher.Subscriber<User>() {
+            Publisher.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Publisher.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(User user) {
+                user.printJson();
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throwable.printStackTrace();
+                latch.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+                latch.countDown();
+            }
+        });
+        latch.await();
+    }
+
+
+    @Test
+    void inMemory() {
+        DB db = DB.connect("database/memory.db", config -> config
+                .inMemory(true)
+                .persistInterval(500)
+                .persistChanges(1000));
+        db.tables(User.class);
+        insert(db);
+        System.out.println(db.count(User.class));
+        db.close();
+
+        DB reopened = DB.connect("database/memory.db", config -> config.inMemory(true));
+        System.out.println(reopened.count(User.class));
+        reopened.close();
+    }
+
+
+    @Test
+    void primitiveColumns() {
+        DB db = connect();
+        insert();
+
+        long[] ages = db.longColumn(User.class, "age");
+        System.out.println(Arrays.toString(ages));
+
+        double[] vipAges = db.doubleColumn(User.class, "age", options -> options
+                .where("vip = ?", true)
+                .order("age", Options.DESC));
+        System.out.println(Arrays.stream(vipAges).average().orElse(0));
+    }
+
+
+    @Test
+    void blob() throws IOException {
+        DB db = connect();
+        db.tables(User.class, Attachment.class);
+        Attachment attachment = new Attachment(a -> {
+            a.name = "photo.png";
+            a.thumbnail = new byte[]{1, 2, 3};
+            a.content = new ByteArrayInputStream(new byte[4 << 20]);
+        });
+        db.insert(attachment);
+
+        Attachment found = db.findOne(Attachment.class, attachment.id());
+        System.out.println(Arrays.toString(found.thumbnail));
+
+        long size = 0;
+        try (InputStream in = db.openBlob(Attachment.class, "content", attachment.id())) {
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                size += n;
+            }
+        }
+        System.out.println(size);
+    }
+
+
+    @Test
+    void forEach() {
+        DB db = connect();
+        insert();
+
+        db.forEach(User.class, options -> options.where("vip = ?", true), DataSupport::printJson);
+
+        long[] total = {0};
+        db.forEach(User.class, options -> options.select("age"), true, user -> total[0] += user.age);
+        System.out.println(total[0]);
+    }
+
+
+    @Test
+    void checkpoint() throws InterruptedException {
+        DB db = DB.connect("database/wal.db", config -> config
+                .journalMode("wal")
+                .checkpointInterval(200)
+                .checkpointSize(1 << 20)
+                .checkpointIdle(500));
+        db.tables(User.class);
+        insert(db);
+        Thread.sleep(1000);
+        System.out.println(db.metrics());
+        db.close();
+    }
+
+
+    @Test
+    void chunkedDelete() {
+        DB db = connect();
+        insert();
+        System.out.println(db.chunkedDelete(User.class, 2, "age > ?", 20));
+        System.out.println(db.count(User.class));
+    }
+
+
+    @Test
+    void expire() throws InterruptedException {
+        DB db = DB.connect("database/expire.db", config -> config
+                .purgeInterval(500)
+                .purgeRate(1000)
+                .purgeChunkSize(100));
+        db.tables(Event.class);
+        for (int i = 0; i < 10; i++) {
+            int n = i;
+            db.insert(new Event(e -> e.name = "event-" + n));
+        }
+        System.out.println(db.count(Event.class));
+        Thread.sleep(2000);
+        System.out.println(db.count(Event.class));
+        db.close();
+    }
+
+
+    @Test
+    void aggregate() {
+        DB db = DB.connect("database/example.db");
+        db.tables(Sale.class);
+        db.deleteAll(Sale.class);
+        db.insert(new Sale(s -> {s.region = "north"; s.amount = 100L;}));
+        db.insert(new Sale(s -> {s.region = "north"; s.amount = 250L;}));
+        db.insert(new Sale(s -> {s.region = "south"; s.amount = 75L;}));
+        db.update(new Sale(s -> s.region = "south"), "amount = ?", 250);
+        System.out.println(db.count(Sale.class));
+        System.out.println(db.sum(Sale.class, "amount"));
+        System.out.println(db.count(Sale.class, "region = ?", "south"));
+        System.out.println(db.sum(Sale.class, "amount", "region = ?", "south"));
+    }
+
+
+    @Test
+    void timeout() {
+        DB db = DB.connect("database/example.db", config -> config.queryTimeout(5000));
+        db.tables(User.class);
+        insert(db);
+        try {
+            db.find(User.class, options -> options
+                    .select("count(*) as age")
+                    .where("id in (with recursive n(x) as (select 1 union all select x + 1 from n) select x from n)")
+                    .timeout(100));
+        } catch (QueryTimeoutException e) {
+            System.out.println(e.getMessage());
+        }
+        System.out.println(db.count(User.class));
+        db.close();
+    }
+
+
+    @Test
+    void partition() {
+        DB db = DB.connect("database/partition.db");
+        db.tables(Log.class);
+        for (int i = 0; i < 10; i++) {
+            int n = i;
+            db.insert(new Log(l -> {l.level = (n % 2 == 0) ? "info" : "warn"; l.message = "message-" + n;}));
+        }
+        long now = System.currentTimeMillis();
+        db.find(Log.class, options -> options.where("level = ?", "warn").range(now - 3_600_000, now + 1)).forEach(Log::printJson);
+        System.out.println(db.count(Log.class));
+        System.out.println(db.count(Log.class, options -> options.where("level = ?", "warn").range(now - 3_600_000, now + 1)));
+        System.out.println(db.chunkedDelete(Log.class, 2, "level = ?", "info"));
+        System.out.println(db.dropPartitions(Log.class, now - 7 * 86_400_000L));
+        db.close();
+    }
+
+
+    @Test
+    void include() {
+        DB db = connect();
+        db.tables(User.class, Purchase.class);
+        insert();
+        for (User user : db.findAll(User.class)) {
+            db.insert(new Purchase(p -> {p.userId = user.id(); p.item = "book";}));
+        }
+        db.find(Purchase.class, options -> options.include("user")).forEach(Purchase::printJson);
+    }
+
+
+    @Test
+    void compress() {
+        DB db = DB.connect("database/example.db");
+        db.tables(Document.class);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            builder.append("lorem ipsum dolor sit amet ");
+        }
+        db.insert(new Document(d -> {d.title = "long"; d.body = builder.toString(); d.tags = Arrays.asList("a", "b");}));
+        db.insert(new Document(d -> {d.title = "short"; d.body = "tiny";}));
+        db.findAll(Document.class).forEach(d -> System.out.println(d.title + " " + d.body.length() + " " + d.tags));
+    }
+
+
+    @Test
+    void analyze() throws InterruptedException {
+        DB db = DB.connect("database/example.db", config -> config
+                .optimizeInterval(500)
+                .analyzeChanges(5)
+                .analysisLimit(100));
+        db.tables(User.class);
+        insert(db);
+        Thread.sleep(1500);
+        System.out.println(db.metrics());
+        db.close();
+    }
+
+
+    @Test
+    void jsonIndex() {
+        DB db = DB.connect("database/example.db");
+        db.tables(Profile.class);
+        db.insert(new Profile(p -> {p.name = "Lake"; p.address = Collections.singletonMap("city", "Paris");}));
+        db.insert(new Profile(p -> {p.name = "Bob"; p.address = Collections.singletonMap("city", "Berlin");}));
+        db.find(Profile.class, options -> options.where(Options.json("address", "$.city") + " = ?", "Paris"))
+                .forEach(Profile::printJson);
+    }
+
+
+    @Test
+    void maintenance() {
+        DB db = DB.connect("database/vacuum.db", config -> config
+                .autoVacuum("incremental")
+                .vacuumInterval(1000)
+                .vacuumBudget(20));
+        db.tables(User.class);
+        for (int i = 0; i < 20; i++) {
+            insert(db);
+        }
+        db.deleteAll(User.class);
+        Maintenance maintenance = db.maintenance();
+        System.out.println(maintenance.incremental() + " " + maintenance);
+        System.out.println(maintenance.incrementalVacuum(100));
+        System.out.println(maintenance);
+        db.close();
+    }
+
+
+    @Test
+    void busyRetry() throws InterruptedException {
+        DB db1 = DB.connect("database/busy.db", config -> config.busyTimeout(0).busyRetries(8).busyBackoff(10, 200));
+        DB db2 = DB.connect("database/busy.db", config -> config.busyTimeout(0).busyRetries(8).busyBackoff(10, 200));
+        db1.tables(User.class);
+        db2.tables(User.class);
+        Thread thread = new Thread(() -> db1.transaction(() -> {
+            insert(db1);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        thread.start();
+        Thread.sleep(20);
+        insert(db2);
+        thread.join();
+        System.out.println(db1.count(User.class) + " " + db2.metrics());
+        db1.close();
+        db2.close();
+    }
+
+
+    @Test
+    void columns() {
+        DB db = connect();
+        insert();
+        db.columns(User.class, null, 2, batch -> {
+            LongBuffer ages = batch.longs("age");
+            for (int i = 0; i < batch.size(); i++) {
+                System.out.println(batch.string("name", i) + " " + ages.get(i));
+            }
+        }, "name", "age");
+        Columns columns = db.columns(User.class, options -> options.where("vip = ?", true), Paths.get("database/users.bin"), "age", "name");
+        System.out.println(columns + " " + columns.dictionary("name"));
+    }
+
+
+}
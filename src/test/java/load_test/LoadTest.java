@@ -0,0 +1,214 @@
+package load_test;
+
+import com.github.artbits.jsqlite.DB;
+import com.github.artbits.jsqlite.DataSupport;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+@Tag("load")
+public final class LoadTest {
+
+
+    public static class Counter extends DataSupport<Counter> {
+        public Integer owner;
+        public Long version;
+        public String payload;
+
+        public Counter(Consumer<Counter> consumer) {
+            super(consumer);
+        }
+    }
+
+
+    private final int threads = Integer.getInteger("jsqlite.threads", 8);
+    private final int operations = Integer.getInteger("jsqlite.operations", 5000);
+    private final int readPercent = Integer.getInteger("jsqlite.reads", 70);
+    private final int rows = Integer.getInteger("jsqlite.rows", 10_000);
+    private final int hotRows = Integer.getInteger("jsqlite.hotRows", 4);
+    private final int payloadSize = Integer.getInteger("jsqlite.payload", 100);
+    private final long seed = Long.getLong("jsqlite.seed", 42L);
+    private final String journalMode = System.getProperty("jsqlite.journalMode");
+
+
+    private static final class Worker implements Callable<Worker> {
+        final int index;
+        final Random random;
+        final long[] reads, inserts, updates, increments;
+        int readCount, insertCount, updateCount, incrementCount;
+        final List<Long> ids = new ArrayList<>();
+        final Map<Long, Long> versions = new HashMap<>();
+        final List<Long> hot;
+        final LoadTest test;
+        final DB db;
+
+        Worker(LoadTest test, DB db, int index, List<Long> seeded, List<Long> hot) {
+            this.test = test;
+            this.db = db;
+            this.index = index;
+            this.hot = hot;
+            this.random = new Random(test.seed + index);
+            this.reads = new long[test.operations];
+            this.inserts = new long[test.operations];
+            this.updates = new long[test.operations];
+            this.increments = new long[test.operations];
+            seeded.forEach(id -> versions.put(id, 0L));
+        }
+
+        @Override
+        public Worker call() {
+            List<Long> owned = new ArrayList<>(versions.keySet());
+            for (int i = 0; i < test.operations; i++) {
+                int roll = random.nextInt(100);
+                long start = System.nanoTime();
+                if (roll < test.readPercent) {
+                    db.findOne(Counter.class, 1L + random.nextInt(test.rows));
+                    reads[readCount++] = System.nanoTime() - start;
+                } else if (owned.isEmpty() || roll % 2 == 0) {
+                    Counter counter = new Counter(c -> {
+                        c.owner = index;
+                        c.version = 0L;
+                        c.payload = test.payload(random);
+                    });
+                    db.insert(counter);
+                    inserts[insertCount++] = System.nanoTime() - start;
+                    ids.add(counter.id());
+                    owned.add(counter.id());
+                    versions.put(counter.id(), 0L);
+                } else if (roll % 4 == 1 && !hot.isEmpty()) {
+                    long id = hot.get(random.nextInt(hot.size()));
+                    try {
+                        db.transaction(() -> {
+                            long version = db.findOne(Counter.class, id).version + 1;
+                            db.update(new Counter(c -> c.version = version), "id = ?", id);
+                        });
+                        increments[incrementCount++] = System.nanoTime() - start;
+                    } catch (RuntimeException e) {
+                        System.out.println("increment on " + id + " failed: " + e.getMessage());
+                    }
+                } else {
+                    long id = owned.get(random.nextInt(owned.size()));
+                    long version = versions.get(id) + 1;
+                    db.update(new Counter(c -> c.version = version), "id = ?", id);
+                    updates[updateCount++] = System.nanoTime() - start;
+                    versions.put(id, version);
+                }
+            }
+            return this;
+        }
+    }
+
+
+    String payload(Random random) {
+        char[] chars = new char[payloadSize];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+
+    @Test
+    void mixed() throws Exception {
+        DB db = DB.connect("database/load.db", config -> config.journalMode(journalMode));
+        db.drop(Counter.class);
+        db.tables(Counter.class);
+
+        List<List<Long>> seeded = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            seeded.add(new ArrayList<>());
+        }
+        Random random = new Random(seed);
+        for (int i = 0; i < rows; i++) {
+            int owner = i % threads;
+            Counter counter = new Counter(c -> {
+                c.owner = owner;
+                c.version = 0L;
+                c.payload = payload(random);
+            });
+            db.insert(counter);
+            seeded.get(owner).add(counter.id());
+        }
+        List<Long> hot = new ArrayList<>();
+        for (int i = 0; i < hotRows; i++) {
+            Counter counter = new Counter(c -> {
+                c.owner = -1;
+                c.version = 0L;
+                c.payload = payload(random);
+            });
+            db.insert(counter);
+            hot.add(counter.id());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Worker>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(new Worker(this, db, i, seeded.get(i), hot)));
+        }
+        List<Worker> workers = new ArrayList<>();
+        for (Future<Worker> future : futures) {
+            workers.add(future.get());
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        report("read", workers, w -> w.reads, w -> w.readCount, elapsed);
+        report("insert", workers, w -> w.inserts, w -> w.insertCount, elapsed);
+        report("update", workers, w -> w.updates, w -> w.updateCount, elapsed);
+        report("hot", workers, w -> w.increments, w -> w.incrementCount, elapsed);
+        System.out.printf("total: %d ops in %d ms (%.0f ops/s)%n", (long) threads * operations,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), threads * operations / (elapsed / 1e9));
+
+        Set<Long> ids = new HashSet<>();
+        long inserted = 0;
+        for (Worker worker : workers) {
+            inserted += worker.ids.size();
+            ids.addAll(worker.ids);
+        }
+        Assertions.assertEquals(inserted, ids.size(), "duplicate ids");
+        Assertions.assertEquals(rows + hotRows + inserted, db.count(Counter.class), "lost inserts");
+        for (Worker worker : workers) {
+            for (Counter counter : db.find(Counter.class, options -> options.where("owner = ?", worker.index))) {
+                Assertions.assertEquals(worker.versions.get(counter.id()), counter.version, "lost update on " + counter.id());
+            }
+        }
+        long incremented = workers.stream().mapToLong(w -> w.incrementCount).sum();
+        long versions = db.find(Counter.class, options -> options.where("owner = ?", -1)).stream().mapToLong(c -> c.version).sum();
+        Assertions.assertEquals(incremented, versions, "lost increments on shared rows");
+        db.close();
+    }
+
+
+    private static void report(String name, List<Worker> workers, Function<Worker, long[]> samples,
+                               ToIntFunction<Worker> counts, long elapsed) {
+        int size = workers.stream().mapToInt(counts).sum();
+        long[] latencies = new long[size];
+        int position = 0;
+        for (Worker worker : workers) {
+            int count = counts.applyAsInt(worker);
+            System.arraycopy(samples.apply(worker), 0, latencies, position, count);
+            position += count;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-6s %8d ops %10.0f ops/s  p50 %8.3f ms  p99 %8.3f ms  p999 %8.3f ms%n", name, size,
+                size / (elapsed / 1e9), percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 0.999));
+    }
+
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+
+}